@@ -0,0 +1,118 @@
+package net.rorarius.challenge.benchmark;
+
+import net.rorarius.challenge.database.DBRepository;
+import net.rorarius.challenge.exceptions.TransactionIdEmptyException;
+import net.rorarius.challenge.exceptions.TransactionInvalidException;
+import net.rorarius.challenge.model.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the repository hot paths on trees of different shapes.
+ *
+ * SHALLOW: roots with 10 children each, DEEP: chains of 1000 transactions, WIDE: a single root with
+ * all other transactions as children. Every tree uses 4 types, "hot" holds half of the transactions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DBRepositoryBenchmark
+{
+    public enum Shape
+    {
+        SHALLOW, DEEP, WIDE
+    }
+
+    private static final String[] TYPES = {"hot", "hot", "cars", "shopping"};
+    private static final int DEPTH = 1000;
+    private static final int FAN_OUT = 10;
+
+    @Param({"10000", "100000"})
+    int size;
+
+    @Param({"SHALLOW", "DEEP", "WIDE"})
+    Shape shape;
+
+    DBRepository repository;
+    long deepestId;
+
+    @Setup(Level.Trial)
+    public void setup() throws TransactionInvalidException {
+        repository = new DBRepository();
+        repository.clearRepostory();
+
+        for (long id = 0; id < size; id++) {
+            repository.addTransaction(new Transaction(id, 1D, TYPES[(int) (id & 3)], parentOf(id)));
+        }
+
+        deepestId = size - 1;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.clearRepostory();
+    }
+
+    private Long parentOf(long id) {
+        switch (shape) {
+            case SHALLOW:
+                return id % (FAN_OUT + 1) == 0 ? null : id - id % (FAN_OUT + 1);
+            case DEEP:
+                return id % DEPTH == 0 ? null : id - 1;
+            default:
+                return id == 0 ? null : 0L;
+        }
+    }
+
+    /**
+     * Updates the amount of a random transaction, which propagates the difference to its ancestors
+     */
+    @Benchmark
+    public boolean addTransaction() throws TransactionInvalidException {
+        long id = ThreadLocalRandom.current().nextLong(size);
+        return repository.addTransaction(new Transaction(id, 2D, TYPES[(int) (id & 3)], parentOf(id)));
+    }
+
+    @Benchmark
+    public Double getTransactionSumRecursiveRoot() throws TransactionIdEmptyException {
+        return repository.getTransactionSumRecursive(0L);
+    }
+
+    @Benchmark
+    public Double getTransactionSumRecursiveLeaf() throws TransactionIdEmptyException {
+        return repository.getTransactionSumRecursive(deepestId);
+    }
+
+    /**
+     * Follows the ancestor index from the deepest transaction up to its root
+     */
+    @Benchmark
+    public long[] getAncestorIdsLeaf() throws TransactionIdEmptyException {
+        return repository.getAncestorIds(deepestId);
+    }
+
+    /**
+     * Sums a type over the whole tree by traversing it, in parallel for the wide tree
+     */
+    @Benchmark
+    public Double getTransactionSumByTypeRoot() throws Exception {
+        return repository.getTransactionSumByType(0L, "hot");
+    }
+
+    @Benchmark
+    public List<Transaction> getTransactionListByTypeHot() {
+        return repository.getTransactionListByType("hot");
+    }
+}
@@ -0,0 +1,55 @@
+package net.rorarius.challenge.benchmark;
+
+import net.rorarius.challenge.database.DBRepository;
+import net.rorarius.challenge.exceptions.TransactionInvalidException;
+import net.rorarius.challenge.model.Transaction;
+
+/**
+ * Measures the retained heap of the repository per transaction, see the README.
+ *
+ * Loads roots with 9 children each and 4 types, then compares the used heap after full collections
+ * with the used heap before loading. Cleared indexes keep their capacity, so every JVM measures a
+ * single size, the argument, default 100000. Run it with a fixed heap, e.g. -Xms2g -Xmx2g, so the
+ * collector does not resize the heap in between.
+ */
+public class FootprintMeasurement
+{
+    private static final String[] TYPES = {"cars", "shopping", "food", "travel"};
+    private static final int FAN_OUT = 9;
+    private static final int WARM_UP = 1000;
+
+    public static void main(String[] args) throws TransactionInvalidException, InterruptedException {
+        int transactions = args.length == 0 ? 100000 : Integer.parseInt(args[0]);
+
+        DBRepository repository = new DBRepository();
+
+        // loads the classes and static state that stay regardless of the size
+        load(repository, WARM_UP);
+        repository.clearRepostory();
+        long before = usedHeap();
+
+        load(repository, transactions);
+        long retained = usedHeap() - before;
+
+        System.out.printf("%d transactions: %d bytes/transaction%n", transactions, retained / transactions);
+    }
+
+    private static void load(DBRepository repository, int transactions) throws TransactionInvalidException {
+        for (long id = 0; id < transactions; id++) {
+            Long parentId = id % (FAN_OUT + 1) == 0 ? null : id - id % (FAN_OUT + 1);
+            repository.addTransaction(new Transaction(id, 1D, TYPES[(int) (id & 3)], parentId));
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+
+        // a single System.gc() may leave garbage behind
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
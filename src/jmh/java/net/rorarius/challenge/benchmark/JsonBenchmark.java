@@ -0,0 +1,129 @@
+package net.rorarius.challenge.benchmark;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.rorarius.challenge.enums.StatusCode;
+import net.rorarius.challenge.json.TransactionJsonCodec;
+import net.rorarius.challenge.model.Transaction;
+import net.rorarius.challenge.responses.StatusResponse;
+import net.rorarius.challenge.responses.SumResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the serialization of the request and response bodies, Jackson databinding against
+ * the streaming TransactionJsonCodec (the *Codec benchmarks)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonBenchmark
+{
+    @Param({"1", "1000"})
+    int size;
+
+    ObjectMapper objectMapper;
+    Transaction transaction;
+    List<Transaction> transactions;
+    SumResponse sumResponse;
+    StatusResponse statusResponse;
+    byte[] transactionJson;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        objectMapper = new ObjectMapper();
+        transaction = new Transaction(10L, 5000D, "cars", 7L);
+        sumResponse = new SumResponse(15000D);
+        statusResponse = new StatusResponse(StatusCode.OK);
+
+        transactions = new ArrayList<>(size);
+        for (long id = 0; id < size; id++) {
+            transactions.add(new Transaction(id, 5000D, "cars", id > 0 ? id - 1 : null));
+        }
+
+        transactionJson = objectMapper.writeValueAsBytes(transaction);
+    }
+
+    @Benchmark
+    public byte[] writeTransaction() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(transaction);
+    }
+
+    @Benchmark
+    public byte[] writeTransactionList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(transactions);
+    }
+
+    @Benchmark
+    public byte[] writeSumResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(sumResponse);
+    }
+
+    @Benchmark
+    public Transaction readTransaction() throws IOException {
+        return objectMapper.readValue(transactionJson, Transaction.class);
+    }
+
+    @Benchmark
+    public byte[] writeStatusResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(statusResponse);
+    }
+
+    @Benchmark
+    public byte[] writeTransactionCodec() throws IOException {
+        ByteArrayBuilder bytes = new ByteArrayBuilder(objectMapper.getFactory()._getBufferRecycler());
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(bytes, JsonEncoding.UTF8)) {
+            TransactionJsonCodec.writeTransaction(generator, transaction);
+        }
+        byte[] json = bytes.toByteArray();
+        // hands the buffer back to the recycler, like ObjectMapper.writeValueAsBytes does
+        bytes.release();
+        return json;
+    }
+
+    @Benchmark
+    public byte[] writeSumResponseCodec() throws IOException {
+        ByteArrayBuilder bytes = new ByteArrayBuilder(objectMapper.getFactory()._getBufferRecycler());
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(bytes, JsonEncoding.UTF8)) {
+            TransactionJsonCodec.writeSumResponse(generator, sumResponse);
+        }
+        byte[] json = bytes.toByteArray();
+        // hands the buffer back to the recycler, like ObjectMapper.writeValueAsBytes does
+        bytes.release();
+        return json;
+    }
+
+    @Benchmark
+    public byte[] writeStatusResponseCodec() throws IOException {
+        ByteArrayBuilder bytes = new ByteArrayBuilder(objectMapper.getFactory()._getBufferRecycler());
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(bytes, JsonEncoding.UTF8)) {
+            TransactionJsonCodec.writeStatusResponse(generator, statusResponse);
+        }
+        byte[] json = bytes.toByteArray();
+        // hands the buffer back to the recycler, like ObjectMapper.writeValueAsBytes does
+        bytes.release();
+        return json;
+    }
+
+    @Benchmark
+    public Transaction readTransactionCodec() throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(transactionJson)) {
+            return TransactionJsonCodec.readTransaction(parser);
+        }
+    }
+}
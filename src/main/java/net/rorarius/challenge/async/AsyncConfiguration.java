@@ -0,0 +1,32 @@
+package net.rorarius.challenge.async;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.DeferredResultProcessingInterceptorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import javax.servlet.http.HttpServletResponse;
+
+@Configuration
+public class AsyncConfiguration extends WebMvcConfigurerAdapter
+{
+    @Value("${transactionservice.async.timeout-ms:30000}")
+    long timeoutMs;
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(timeoutMs);
+        configurer.registerDeferredResultInterceptors(new DeferredResultProcessingInterceptorAdapter() {
+            @Override
+            public <T> void preProcess(NativeWebRequest request, DeferredResult<T> deferredResult) {
+                // only now the request is asynchronous, a read submitted earlier could race the container thread
+                if (deferredResult instanceof ReadResult) {
+                    ((ReadResult<T>) deferredResult).submit(request.getNativeResponse(HttpServletResponse.class));
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,52 @@
+package net.rorarius.challenge.async;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * The pools the read endpoints are handled on. Point reads (a transaction, the count or stats of a
+ * type, a sum without type) only look up a value and get their own pool, so they are not queued
+ * behind aggregate reads (the IDs of a type, a sum by type) that stream or traverse large parts
+ * of the repository.
+ */
+@Component
+public class ReadExecutors
+{
+    @Value("${transactionservice.async.point.threads:16}")
+    int pointThreads;
+
+    @Value("${transactionservice.async.point.queue-capacity:1000}")
+    int pointQueueCapacity;
+
+    @Value("${transactionservice.async.aggregate.threads:4}")
+    int aggregateThreads;
+
+    @Value("${transactionservice.async.aggregate.queue-capacity:100}")
+    int aggregateQueueCapacity;
+
+    private ReadPool pointReads;
+    private ReadPool aggregateReads;
+
+    @PostConstruct
+    public void start() {
+        pointReads = new ReadPool("point", pointThreads, pointQueueCapacity);
+        aggregateReads = new ReadPool("aggregate", aggregateThreads, aggregateQueueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pointReads.shutdown();
+        aggregateReads.shutdown();
+    }
+
+    public ReadPool getPointReads() {
+        return pointReads;
+    }
+
+    public ReadPool getAggregateReads() {
+        return aggregateReads;
+    }
+}
@@ -0,0 +1,76 @@
+package net.rorarius.challenge.async;
+
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed number of threads with a bounded queue that reads are handled on instead of the
+ * servlet container threads. A read that does not fit into the queue is answered with 503
+ * right away, a read that is still queued when its request times out is skipped.
+ */
+public class ReadPool
+{
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+
+    public ReadPool(String name, int threads, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        this.name = name;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, name + "-read-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Wraps a read of a request handler, it is submitted to the pool once Spring has started
+     * the asynchronous processing of the request, so the read may use the request and response
+     * @param read returns the body of the response, or null if it wrote the response itself
+     * @return the result to return from the handler
+     */
+    public <T> DeferredResult<T> read(Callable<T> read) {
+        return new ReadResult<>(this, read);
+    }
+
+    void submit(ReadResult<?> result, HttpServletResponse response) {
+        try {
+            executor.execute(result::run);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            result.setResult(null);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
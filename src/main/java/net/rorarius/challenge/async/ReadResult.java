@@ -0,0 +1,37 @@
+package net.rorarius.challenge.async;
+
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.Callable;
+
+/**
+ * The result of a read that is handled on a ReadPool
+ */
+class ReadResult<T> extends DeferredResult<T>
+{
+    private final ReadPool pool;
+    private final Callable<T> read;
+
+    ReadResult(ReadPool pool, Callable<T> read) {
+        this.pool = pool;
+        this.read = read;
+    }
+
+    void submit(HttpServletResponse response) {
+        pool.submit(this, response);
+    }
+
+    void run() {
+        // the request timed out while the read was queued
+        if (isSetOrExpired()) {
+            return;
+        }
+
+        try {
+            setResult(read.call());
+        } catch (Exception e) {
+            setErrorResult(e);
+        }
+    }
+}
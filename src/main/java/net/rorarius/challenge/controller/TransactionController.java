@@ -1,14 +1,35 @@
 package net.rorarius.challenge.controller;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.PrimitiveIterator;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.rorarius.challenge.async.ReadExecutors;
+import net.rorarius.challenge.async.ReadPool;
 import net.rorarius.challenge.database.DBRepository;
+import net.rorarius.challenge.database.LongOrderedSet;
 import net.rorarius.challenge.enums.StatusCode;
+import net.rorarius.challenge.exceptions.SubtreeTooLargeException;
+import net.rorarius.challenge.exceptions.TransactionCycleException;
+import net.rorarius.challenge.model.BatchTransaction;
 import net.rorarius.challenge.model.Transaction;
+import net.rorarius.challenge.responses.CountResponse;
+import net.rorarius.challenge.responses.RootResponse;
+import net.rorarius.challenge.responses.StatsResponse;
 import net.rorarius.challenge.responses.StatusResponse;
 import net.rorarius.challenge.responses.SumResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -16,24 +37,42 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 @RestController
 public class TransactionController
 {
+    private static final int MAX_PAGE_SIZE = 10000;
+
+    // versions start over with every start of the service, the prefix keeps their ETags apart
+    private static final String ETAG_PREFIX = Long.toString(System.currentTimeMillis(), 36) + "-";
+
     @Autowired
     DBRepository repository;
 
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    ReadExecutors readExecutors;
+
+    @Value("${transactionservice.batch.chunk-size:4096}")
+    int batchChunkSize;
+
     /**
      * Adds a new Transaction via the PUT Command. Returns a Body, although PUT
      * normally does not need a return body.
      * @param transactionId the transactionId to be added
      * @param transaction the transaction from the Request-Body
      * @param response The HttpServletResponse for custom return codes
-     * @return StatusResponse OK or ERROR, Returns HttpCode 200, 201 or 400
+     * @return StatusResponse OK or ERROR, Returns HttpCode 200, 201, 400 or 500 if the transaction log failed
      */
     @RequestMapping(value="/transactionservice/transaction/{transactionId}",
                     method= RequestMethod.PUT,
@@ -46,53 +85,216 @@ public class TransactionController
         try {
             transaction.setTransactionId(transactionId);
 
-            if (!repository.transactionIsValid(transaction)) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                return new StatusResponse(StatusCode.ERROR);
-            }
-
-            if (transaction.getParentId() != null &&
-                    !repository.transactionExists(transaction.getParentId())) {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                return new StatusResponse(StatusCode.ERROR);
-            }
-
             // Depending on if the Transaction is updated or created we return a
             // different Http-Code (200-OK for update, 201-Created for create)
-            if (repository.transactionExists(transactionId)) {
-                response.setStatus(HttpServletResponse.SC_OK);
-            } else {
-                response.setStatus(HttpServletResponse.SC_CREATED);
+            switch (repository.upsertTransaction(transaction)) {
+                case CREATED:
+                    response.setStatus(HttpServletResponse.SC_CREATED);
+                    break;
+                case UPDATED:
+                    response.setStatus(HttpServletResponse.SC_OK);
+                    break;
+                default:
+                    response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                    return new StatusResponse(StatusCode.ERROR);
             }
 
-            repository.addTransaction(transaction);
-
             return new StatusResponse(StatusCode.OK);
+        } catch (UncheckedIOException e) {
+            // the transaction log failed, the transaction may not be durable
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return new StatusResponse(StatusCode.ERROR);
         } catch (Exception e) {
             handleException(e);
             return new StatusResponse(StatusCode.ERROR);
         }
     }
 
+    /**
+     * Adds a batch of Transactions via the POST Command. The body is either a JSON array or
+     * newline delimited JSON objects, each with a transaction_id. Parents may appear anywhere
+     * in the batch. The body is read and applied in chunks of batchChunkSize transactions, each
+     * under one acquisition of the write lock, only transactions waiting for a parent later in the
+     * batch are kept across chunks. The per-transaction results are streamed back in the order
+     * of the batch as soon as they are durable.
+     * If the body is not valid JSON, the chunks applied before the error stay applied and the
+     * transactions read after them are rejected. The results end with an error marker then, the
+     * HttpCode is 400 unless results were streamed before the error was found.
+     * @param request The HttpServletRequest with the batch as body
+     * @param response The HttpServletResponse the results are written to
+     * @throws IOException
+     */
+    @RequestMapping(value="/transactionservice/transactions",
+            method= RequestMethod.POST,
+            consumes= {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"},
+            produces= MediaType.APPLICATION_JSON_VALUE
+    )
+    public void postTransactions(HttpServletRequest request,
+                                 HttpServletResponse response) throws IOException {
+
+        DBRepository.Batch batch = repository.startBatch();
+        BatchResults results = new BatchResults(batch, response);
+        List<Transaction> chunk = new ArrayList<>(batchChunkSize);
+
+        try {
+            MappingIterator<BatchTransaction> values = objectMapper.reader(BatchTransaction.class)
+                    .readValues(request.getInputStream());
+
+            while (values.hasNextValue()) {
+                Transaction transaction = values.nextValue().toTransaction();
+                results.add(transaction);
+                chunk.add(transaction);
+
+                if (chunk.size() == batchChunkSize) {
+                    batch.add(chunk);
+                    chunk.clear();
+                    results.writeResolved(HttpServletResponse.SC_OK);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // the current chunk is dropped, whatever waits for a parent is rejected
+            batch.finish();
+            results.finish(HttpServletResponse.SC_BAD_REQUEST, e.getOriginalMessage());
+            return;
+        }
+
+        batch.add(chunk);
+        batch.finish();
+        results.finish(HttpServletResponse.SC_OK, null);
+    }
 
     /**
-     * Adds a new Transaction via the PUT Command. Returns a Body, although PUT
-     * normally does not need a return body.
-     * @param transactionId the transactionId to be added
+     * Streams the results of a batch in the order of the batch. Only the IDs of the transactions
+     * whose results are not written yet are kept.
+     */
+    private final class BatchResults
+    {
+        private final DBRepository.Batch batch;
+        private final HttpServletResponse response;
+        private JsonGenerator generator;
+
+        // the IDs from the first unwritten transaction on, a missing ID is marked in noIds
+        private long[] transactionIds = new long[16];
+        private BitSet noIds = new BitSet();
+        private int written;
+        private int count;
+
+        BatchResults(DBRepository.Batch batch, HttpServletResponse response) {
+            this.batch = batch;
+            this.response = response;
+        }
+
+        void add(Transaction transaction) {
+            int index = count - written;
+
+            if (index == transactionIds.length) {
+                transactionIds = Arrays.copyOf(transactionIds, index * 2);
+            }
+            if (transaction.getTransactionId() != null) {
+                transactionIds[index] = transaction.transactionIdValue();
+            } else {
+                noIds.set(index);
+            }
+            count++;
+        }
+
+        /**
+         * Writes the results that are known and durable
+         * @param status the HttpCode if this starts the response
+         */
+        void writeResolved(int status) throws IOException {
+            int resolved = batch.awaitResolved();
+
+            if (resolved > written) {
+                start(status);
+                for (int i = written; i < resolved; i++) {
+                    writeResult(i - written, batch.result(i));
+                }
+                generator.flush();
+                drop(resolved - written);
+            }
+        }
+
+        /**
+         * Writes the remaining results, transactions that were read but never applied are rejected
+         * @param status the HttpCode if the response is not started yet
+         * @param error the reason why the body could not be read to its end or null
+         */
+        void finish(int status, String error) throws IOException {
+            writeResolved(status);
+            start(status);
+
+            for (int i = 0; i < count - written; i++) {
+                writeResult(i, StatusCode.ERROR);
+            }
+            if (error != null) {
+                generator.writeStartObject();
+                generator.writeStringField("status", StatusCode.ERROR.getStatusCode());
+                generator.writeStringField("error", error);
+                generator.writeEndObject();
+            }
+
+            generator.writeEndArray();
+            generator.close();
+        }
+
+        private void start(int status) throws IOException {
+            if (generator == null) {
+                response.setStatus(status);
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                generator = objectMapper.getFactory().createGenerator(response.getOutputStream(), JsonEncoding.UTF8);
+                generator.writeStartArray();
+            }
+        }
+
+        private void writeResult(int index, StatusCode status) throws IOException {
+            generator.writeStartObject();
+            if (!noIds.get(index)) {
+                generator.writeNumberField("transaction_id", transactionIds[index]);
+            } else {
+                generator.writeNullField("transaction_id");
+            }
+            generator.writeStringField("status", status.getStatusCode());
+            generator.writeEndObject();
+        }
+
+        private void drop(int results) {
+            System.arraycopy(transactionIds, results, transactionIds, 0, count - written - results);
+            noIds = noIds.get(results, Math.max(results, noIds.length()));
+            written += results;
+        }
+    }
+
+    /**
+     * Returns a Transaction by its ID together with an ETag of its version
+     * @param transactionId the transactionId to be returned
+     * @param request The HttpServletRequest with an optional If-None-Match header
      * @param response The HttpServletResponse for custom return codes
-     * @return StatusResponse OK or ERROR, Returns HttpCode 200, 201 or 400
+     * @return Transaction, Returns HttpCode 200, 304 if the ETag still matches or 404, completed on the
+     *         point read pool
      */
     @RequestMapping(value="/transactionservice/transaction/{transactionId}",
             method= RequestMethod.GET,
             produces= MediaType.APPLICATION_JSON_VALUE
     )
-    public Transaction getTransaction(@PathVariable("transactionId") Long transactionId,
-                                         HttpServletResponse response) {
+    public DeferredResult<Transaction> getTransaction(@PathVariable("transactionId") Long transactionId,
+                                                      HttpServletRequest request,
+                                                      HttpServletResponse response) {
+
+        return readExecutors.getPointReads().read(() -> readTransaction(transactionId, request, response));
+    }
 
+    private Transaction readTransaction(Long transactionId, HttpServletRequest request,
+                                        HttpServletResponse response) {
         try {
+            String etag = etagOf(repository.getTransactionVersion(transactionId));
             Transaction transaction = repository.getTransactionById(transactionId);
 
             if (transaction != null) {
+                if (notModified(etag, request, response)) {
+                    return null;
+                }
+                response.setHeader(HttpHeaders.ETAG, etag);
                 return transaction;
             } else {
                 response.setStatus(HttpServletResponse.SC_NOT_FOUND);
@@ -105,30 +307,113 @@ public class TransactionController
     }
 
     /**
-     * Returns a List of all transactionIDs for a certain type of Transaction
+     * Returns a List of all transactionIDs for a certain type of Transaction.
+     * The IDs are streamed to the response as a JSON array while they are read from the repository.
+     * @param type the type of transaction to query
+     * @param after optional, only IDs following this transactionId are returned
+     * @param cursor optional, the cursor of the Link-Header, which stays valid if its transaction changes its type
+     * @param limit optional page size, a Link-Header points to the next page if there is one
+     * @param request The HttpServletRequest with an optional If-None-Match header
+     * @param response The HttpServletResponse for custom return codes
+     * @return completed on the aggregate read pool once the IDs are written
+     */
+    @RequestMapping(value="/transactionservice/types/{type}",
+            method= RequestMethod.GET,
+            produces= MediaType.APPLICATION_JSON_VALUE
+    )
+    public DeferredResult<Void> getTransactionIdsByType(@PathVariable("type") String type,
+                                                        @RequestParam(value="after", required=false) Long after,
+                                                        @RequestParam(value="cursor", required=false) Long cursor,
+                                                        @RequestParam(value="limit", required=false) Integer limit,
+                                                        HttpServletRequest request,
+                                                        HttpServletResponse response) {
+
+        return readExecutors.getAggregateReads().read(() -> writeTransactionIdsByType(type, after, cursor, limit,
+                request, response, MediaType.APPLICATION_JSON_VALUE, false));
+    }
+
+    /**
+     * Returns all transactionIDs for a certain type of Transaction as newline delimited JSON,
+     * one ID per line, streamed while they are read from the repository.
      * @param type the type of transaction to query
+     * @param after optional, only IDs following this transactionId are returned
+     * @param cursor optional, the cursor of the Link-Header, which stays valid if its transaction changes its type
+     * @param limit optional page size, a Link-Header points to the next page if there is one
+     * @param request The HttpServletRequest with an optional If-None-Match header
      * @param response The HttpServletResponse for custom return codes
-     * @returnList transactionIds as Long, Returns HttpCodes 200 or 404
+     * @return completed on the aggregate read pool once the IDs are written
      */
     @RequestMapping(value="/transactionservice/types/{type}",
+            method= RequestMethod.GET,
+            produces= "application/x-ndjson"
+    )
+    public DeferredResult<Void> getTransactionIdsByTypeNdjson(@PathVariable("type") String type,
+                                                              @RequestParam(value="after", required=false) Long after,
+                                                              @RequestParam(value="cursor", required=false) Long cursor,
+                                                              @RequestParam(value="limit", required=false) Integer limit,
+                                                              HttpServletRequest request,
+                                                              HttpServletResponse response) {
+
+        return readExecutors.getAggregateReads().read(() -> writeTransactionIdsByType(type, after, cursor, limit,
+                request, response, "application/x-ndjson", true));
+    }
+
+    /**
+     * Returns the number of transactions for a certain type of Transaction
+     * @param type the type of transaction to query
+     * @param response The HttpServletResponse for custom return codes
+     * @return Number of transactions, Returns HttpCodes 200 or 404 and 0 if the type was not found,
+     *         completed on the point read pool
+     */
+    @RequestMapping(value="/transactionservice/types/{type}/count",
             method= RequestMethod.GET,
             produces= MediaType.APPLICATION_JSON_VALUE
     )
-    public List<Long> getTransactionIdsByType(@PathVariable("type") String type,
-                               HttpServletResponse response) {
+    public DeferredResult<CountResponse> getTransactionCountByType(@PathVariable("type") String type,
+                                                                   HttpServletResponse response) {
+
+        return readExecutors.getPointReads().read(() -> readTransactionCountByType(type, response));
+    }
 
+    private CountResponse readTransactionCountByType(String type, HttpServletResponse response) {
         try {
-            if (repository.transactionListContainsType(type))
-            {
-                List<Transaction> transactionListForType = repository.getTransactionListByType(type);
-                List<Long> transactionIdList = new ArrayList<>();
+            if (repository.transactionListContainsType(type)) {
+                response.setStatus(HttpServletResponse.SC_OK);
+                return new CountResponse(repository.getTransactionCountByType(type));
+            } else {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            }
+        } catch (Exception e) {
+            handleException(e);
+        }
 
-                for (Transaction transaction : transactionListForType) {
-                    transactionIdList.add(transaction.getTransactionId());
-                }
+        return new CountResponse(0);
+    }
+
+    /**
+     * Returns count, sum, min and max of the amounts of a certain type of Transaction
+     * @param type the type of transaction to query
+     * @param response The HttpServletResponse for custom return codes
+     * @return The aggregates of the type, Returns HttpCodes 200 or 404 and a count of 0 if the type was not found,
+     *         completed on the point read pool, the aggregates are maintained on every PUT
+     */
+    @RequestMapping(value="/transactionservice/types/{type}/stats",
+            method= RequestMethod.GET,
+            produces= MediaType.APPLICATION_JSON_VALUE
+    )
+    public DeferredResult<StatsResponse> getTransactionStatsByType(@PathVariable("type") String type,
+                                                                   HttpServletResponse response) {
 
+        return readExecutors.getPointReads().read(() -> readTransactionStatsByType(type, response));
+    }
+
+    private StatsResponse readTransactionStatsByType(String type, HttpServletResponse response) {
+        try {
+            StatsResponse stats = repository.getTransactionStatsByType(type);
+
+            if (stats != null) {
                 response.setStatus(HttpServletResponse.SC_OK);
-                return transactionIdList;
+                return stats;
             } else {
                 response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             }
@@ -136,30 +421,143 @@ public class TransactionController
             handleException(e);
         }
 
-        return new ArrayList<>();
+        return new StatsResponse(0, 0D, null, null);
+    }
+
+    /**
+     * Writes the transactionIDs of a type directly to the output stream of the response.
+     * Without a limit all IDs are streamed, with a limit only the page is read from the repository.
+     * Returns HttpCodes 200, 304 if the type did not change, 400 for an invalid limit, an after that is not
+     * part of the type or both after and cursor, or 404, errors result in an empty list.
+     * @return null, the response is complete
+     */
+    private Void writeTransactionIdsByType(String type, Long after, Long cursor, Integer limit,
+                                           HttpServletRequest request, HttpServletResponse response,
+                                           String contentType, boolean ndjson) throws IOException {
+
+        PrimitiveIterator.OfLong transactionIds = null;
+        String etag = etagOf(repository.getTypeVersion(type));
+
+        if (!repository.transactionListContainsType(type)) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        } else if ((limit != null && (limit < 1 || limit > MAX_PAGE_SIZE))
+                || (after != null && (cursor != null || !repository.transactionTypeContains(type, after)))) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        } else if (notModified(etag, request, response)) {
+            return null;
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+            response.setHeader(HttpHeaders.ETAG, etag);
+            LongOrderedSet.Cursor ids = repository.getTransactionIdsByType(type, after, cursor);
+            transactionIds = limit != null ? readPage(ids, limit, request, response) : ids;
+        }
+
+        response.setContentType(contentType);
+
+        try (JsonGenerator generator = objectMapper.getFactory()
+                .createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+            if (ndjson) {
+                generator.setRootValueSeparator(null);
+            } else {
+                generator.writeStartArray();
+            }
+
+            while (transactionIds != null && transactionIds.hasNext()) {
+                generator.writeNumber(transactionIds.nextLong());
+                if (ndjson) {
+                    generator.writeRaw('\n');
+                }
+            }
+
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Reads one page of transactionIDs and adds a Link-Header to the next page if there are more IDs.
+     * The next page continues after the insertion position of the last ID, so it does not matter if
+     * that transaction changes its type meanwhile.
+     * @return the IDs of the page
+     */
+    private PrimitiveIterator.OfLong readPage(LongOrderedSet.Cursor transactionIds, int limit,
+                                              HttpServletRequest request, HttpServletResponse response) {
+        long[] page = new long[limit];
+        int size = 0;
+
+        while (size < limit && transactionIds.hasNext()) {
+            page[size++] = transactionIds.nextLong();
+        }
+
+        if (size == limit) {
+            // the sequence of the last ID of the page, hasNext() may move on to the next chunk
+            long cursor = transactionIds.sequence();
+
+            if (transactionIds.hasNext()) {
+                // read on a pool thread, which has no current request
+                String next = ServletUriComponentsBuilder.fromRequest(request)
+                        .replaceQueryParam("after")
+                        .replaceQueryParam("cursor", cursor)
+                        .build().toUriString();
+                response.setHeader(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+            }
+        }
+
+        return Arrays.stream(page, 0, size).iterator();
     }
 
     /**
      * Returns a Sum of all Transactions and Sub-Transactions of
      * @param transactionId
+     * @param type optional, only Transactions of this type are summed up
+     * @param request The HttpServletRequest with an optional If-None-Match header
      * @param response
      * @return Sum of Amounts of all Transactions and Sub-Transactions.
-     *         Returns HttpCodes 200 or 404 and 0 if no Transaction was found
+     *         Returns HttpCodes 200, 304 if the subtree did not change or 404 and 0 if no Transaction was found,
+     *         422 if the subtree is too large to be summed up by type. Completed on the point read pool,
+     *         or on the aggregate read pool if the subtree is traversed to sum up a type
      */
     @RequestMapping(value="/transactionservice/sum/{transaction_id}",
             method= RequestMethod.GET,
             produces= MediaType.APPLICATION_JSON_VALUE
     )
-    public SumResponse getTransactionSumById(@PathVariable("transaction_id") Long transactionId,
-                                              HttpServletResponse response) {
+    public DeferredResult<SumResponse> getTransactionSumById(@PathVariable("transaction_id") Long transactionId,
+                                                             @RequestParam(value="type", required=false) String type,
+                                                             HttpServletRequest request,
+                                                             HttpServletResponse response) {
+
+        ReadPool pool = type != null ? readExecutors.getAggregateReads() : readExecutors.getPointReads();
+        return pool.read(() -> readTransactionSumById(transactionId, type, request, response));
+    }
 
+    private SumResponse readTransactionSumById(Long transactionId, String type, HttpServletRequest request,
+                                               HttpServletResponse response) {
         try {
+            String etag = etagOf(repository.getSubtreeVersion(transactionId));
+
             if (repository.transactionExists(transactionId)) {
+                if (notModified(etag, request, response)) {
+                    return null;
+                }
+
+                Double sum = type != null ? repository.getTransactionSumByType(transactionId, type)
+                        : repository.getTransactionSumRecursive(transactionId);
+
                 response.setStatus(HttpServletResponse.SC_OK);
-                return new SumResponse(repository.getTransactionSumRecursive(transactionId));
+                response.setHeader(HttpHeaders.ETAG, etag);
+                return new SumResponse(sum);
             } else {
                 response.setStatus(HttpServletResponse.SC_NOT_FOUND);
             }
+        } catch (SubtreeTooLargeException e) {
+            response.setStatus(HttpStatus.UNPROCESSABLE_ENTITY.value());
+            return new SumResponse(null);
+        } catch (TransactionCycleException e) {
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            return new SumResponse(null);
         } catch (Exception e) {
             handleException(e);
         }
@@ -167,6 +565,108 @@ public class TransactionController
         return new SumResponse(0D);
     }
 
+    /**
+     * Returns the root of the tree a transaction belongs to and its depth below the root
+     * @param transactionId
+     * @param response
+     * @return root_id and depth, Returns HttpCodes 200 or 404 and an empty root if no Transaction was found,
+     *         completed on the point read pool
+     */
+    @RequestMapping(value="/transactionservice/root/{transaction_id}",
+            method= RequestMethod.GET,
+            produces= MediaType.APPLICATION_JSON_VALUE
+    )
+    public DeferredResult<RootResponse> getTransactionRoot(@PathVariable("transaction_id") Long transactionId,
+                                                           HttpServletResponse response) {
+
+        return readExecutors.getPointReads().read(() -> readTransactionRoot(transactionId, response));
+    }
+
+    private RootResponse readTransactionRoot(Long transactionId, HttpServletResponse response) {
+        try {
+            RootResponse root = repository.getTransactionRoot(transactionId);
+
+            if (root != null) {
+                response.setStatus(HttpServletResponse.SC_OK);
+                return root;
+            } else {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            }
+        } catch (Exception e) {
+            handleException(e);
+        }
+
+        return new RootResponse(null, null);
+    }
+
+    /**
+     * Returns the transactionIDs of all ancestors of a transaction, from its parent up to the root
+     * @param transactionId
+     * @param response
+     * @return List of transactionIDs, empty for a root, Returns HttpCodes 200 or 404 and an empty list
+     *         if no Transaction was found, completed on the aggregate read pool as trees may be deep
+     */
+    @RequestMapping(value="/transactionservice/ancestors/{transaction_id}",
+            method= RequestMethod.GET,
+            produces= MediaType.APPLICATION_JSON_VALUE
+    )
+    public DeferredResult<long[]> getTransactionAncestors(@PathVariable("transaction_id") Long transactionId,
+                                                          HttpServletResponse response) {
+
+        return readExecutors.getAggregateReads().read(() -> readTransactionAncestors(transactionId, response));
+    }
+
+    private long[] readTransactionAncestors(Long transactionId, HttpServletResponse response) {
+        try {
+            long[] ancestorIds = repository.getAncestorIds(transactionId);
+
+            if (ancestorIds != null) {
+                response.setStatus(HttpServletResponse.SC_OK);
+                return ancestorIds;
+            } else {
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            }
+        } catch (Exception e) {
+            handleException(e);
+        }
+
+        return new long[0];
+    }
+
+    /**
+     * Builds the ETag of a version of the repository
+     */
+    private String etagOf(long version) {
+        return "\"" + ETAG_PREFIX + version + "\"";
+    }
+
+    /**
+     * Answers 304 Not Modified if the If-None-Match header of the request contains the ETag
+     * @return true if the response is complete and no body must be written
+     */
+    private boolean notModified(String etag, HttpServletRequest request, HttpServletResponse response) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+
+            if (candidate.equals(etag) || candidate.equals("*")) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                response.setHeader(HttpHeaders.ETAG, etag);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     /**
      * Handles Exceptions of all REST-Services by returning an Internal Server Error Http-Code
      * @param ex
@@ -1,23 +1,71 @@
 package net.rorarius.challenge.database;
 
+import net.rorarius.challenge.enums.StatusCode;
+import net.rorarius.challenge.enums.UpsertResult;
+import net.rorarius.challenge.exceptions.SubtreeTooLargeException;
+import net.rorarius.challenge.exceptions.TransactionCycleException;
 import net.rorarius.challenge.exceptions.TransactionIdEmptyException;
 import net.rorarius.challenge.exceptions.TransactionInvalidException;
+import net.rorarius.challenge.metrics.TransactionMetrics;
 import net.rorarius.challenge.model.Transaction;
+import net.rorarius.challenge.responses.RootResponse;
+import net.rorarius.challenge.responses.StatsResponse;
 import net.rorarius.challenge.validator.TransactionValidator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.Errors;
+import org.springframework.validation.ObjectError;
 import org.springframework.validation.ValidationUtils;
 
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
 
 /**
  * In-Memory Data-Repository.
- * Please note that for simplicity sake I did NOT implement Transactional safety here.
- * For a real world use case, this would obviously be mandatory!
+ *
+ * The "Tables" are concurrent maps, so reads never block. Tables keyed by transaction-ID use a
+ * LongIndex to avoid boxing every ID. The transactions themselves are kept in a TransactionStore,
+ * either as objects on the heap or as records in direct memory (transactionservice.storage). The IDs per type and per parent are kept in LongOrderedSets,
+ * which return them in insertion order and support updates in constant time. Types are mapped to
+ * ints by a TypeDictionary, the type index is keyed by these and stored transactions share the
+ * canonical type String. Writes of the same transaction-ID are
+ * serialized by a striped lock, while writes of different IDs run in parallel. Moving a transaction
+ * to another parent or type removes it from its previous index entries and is therefore done exclusively,
+ * so the indexes only ever contain the live transactions.
+ * The per-type and per-parent sets are guarded by their own monitor and handed out as copies.
+ *
+ * The subtree sums double as ancestor index, each one points to the sum of the parent and holds the
+ * root and depth of its transaction. Sums are propagated and cycles detected by following these
+ * pointers, a move updates root and depth of the moved subtree.
+ *
+ * Every write takes a number from a sequence, which becomes the version of the transaction, of the
+ * subtrees of the transaction and its ancestors and of its type. A version is published after the
+ * write, so a reader that reads the version first never sees data older than the version.
+ *
+ * If a TransactionLog is attached, every stored transaction is appended to it before it is
+ * published, and writers return once the log reports it durable.
+ *
+ * A snapshot can be loaded in the background on startup. Until it is loaded, lookups by ID fall
+ * back to the memory-mapped snapshot, everything else waits for the load to finish.
  */
 @Repository
 public class DBRepository
@@ -25,17 +73,91 @@ public class DBRepository
     @Autowired
     TransactionValidator validator;
 
-    private static Hashtable<Long, Transaction> transactionListById = new Hashtable<>();
-    private static Hashtable<String, List<Transaction>> transactionListByType = new Hashtable<>();
-    private static Hashtable<Long, List<Transaction>> transactionWithChilds = new Hashtable<>();
+    @Autowired
+    TransactionMetrics metrics;
+
+    @Value("${transactionservice.storage:HEAP}")
+    TransactionStore.Backend storage = TransactionStore.Backend.HEAP;
+
+    @Value("${transactionservice.traversal.max-subtree-size:1000000}")
+    int maxSubtreeSize = 1000000;
+
+    @Value("${transactionservice.traversal.parallel-threshold:1024}")
+    int parallelThreshold = 1024;
+
+    @Value("${transactionservice.cache.max-entries:10000}")
+    int maxCachedSums = 10000;
+
+    private static final int LOCK_STRIPES = 64;
+    private static final int ITERATOR_CHUNK_SIZE = 1024;
+
+    private static volatile TransactionStore transactionListById = new HeapTransactionStore();
+    private static TransactionStore.Backend transactionStoreBackend = TransactionStore.Backend.HEAP;
+    private static final TypeDictionary typeDictionary = new TypeDictionary();
+    private static final LongIndex<LongOrderedSet> transactionListByType = new LongIndex<>();
+    private static final LongIndex<TypeStats> transactionStatsByType = new LongIndex<>();
+    private static final LongIndex<LongOrderedSet> transactionWithChilds = new LongIndex<>();
+    private static final LongIndex<SubtreeSum> transactionSums = new LongIndex<>();
+    private static final SumCache sumCache = new SumCache(10000);
+    private static final AtomicLong writeSequence = new AtomicLong();
+    // reused by the writes of a thread, a path is as long as the tree is deep
+    private static final ThreadLocal<Path> paths = ThreadLocal.withInitial(Path::new);
+    private static final ThreadLocal<Path> previousPaths = ThreadLocal.withInitial(Path::new);
+    private static final LongIndex<AtomicLong> typeVersions = new LongIndex<>();
+
+    private static final Lock[] transactionLocks = new Lock[LOCK_STRIPES];
+    private static final ReadWriteLock structureLock = new ReentrantReadWriteLock();
+
+    private static volatile TransactionLog transactionLog;
+    private static volatile MappedTransactionSnapshot loadingSnapshot;
+    private static volatile CountDownLatch snapshotLoaded = new CountDownLatch(0);
+
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            transactionLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    public void configure() {
+        selectTransactionStore();
+        sumCache.setMaxEntries(maxCachedSums);
+    }
+
+    /**
+     * Switches to the configured TransactionStore, which is only possible while the repository is empty
+     */
+    private void selectTransactionStore() {
+        structureLock.writeLock().lock();
+        try {
+            if (storage != transactionStoreBackend) {
+                if (transactionListById.size() > 0) {
+                    throw new IllegalStateException("Cannot switch the storage of a repository containing transactions");
+                }
+                transactionListById = storage.create(typeDictionary);
+                transactionStoreBackend = storage;
+            }
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
 
     /**
      * Clears all "Tables" of the Repository
      */
     public void clearRepostory() {
-        transactionListById = new Hashtable<>();
-        transactionListByType = new Hashtable<>();
-        transactionWithChilds = new Hashtable<>();
+        awaitSnapshotLoaded();
+        structureLock.writeLock().lock();
+        try {
+            transactionListById.clear();
+            transactionListByType.clear();
+            transactionStatsByType.clear();
+            transactionWithChilds.clear();
+            transactionSums.clear();
+            sumCache.clear();
+        } finally {
+            structureLock.writeLock().unlock();
+        }
     }
 
     /**
@@ -45,26 +167,38 @@ public class DBRepository
      * @return BeanPropertyBindingResult
      */
     public BeanPropertyBindingResult validateTransaction(Transaction transaction) {
-        TransactionValidator transactionValidator = new TransactionValidator();
         BeanPropertyBindingResult result = new BeanPropertyBindingResult(transaction, "transaction");
-        ValidationUtils.invokeValidator(transactionValidator, transaction, result);
+        ValidationUtils.invokeValidator(validator(), transaction, result);
+
+        if (result.hasErrors()) {
+            for (ObjectError error : result.getAllErrors()) {
+                countRejection(error.getCode());
+            }
+        }
 
         return result;
     }
 
     /**
-     * Returns a simple boolean if a Transaction is valid or not
+     * Returns a simple boolean if a Transaction is valid or not. Valid transactions are checked
+     * without allocating anything, the errors of an invalid one are collected to count them.
      * @param transaction
      * @return true/false
      */
     public boolean transactionIsValid(Transaction transaction) {
-        BeanPropertyBindingResult result = validateTransaction(transaction);
-
-        if (result.hasErrors()) {
-            return false;
-        } else {
+        if (validator().isValid(transaction)) {
             return true;
         }
+
+        return !validateTransaction(transaction).hasErrors();
+    }
+
+    private TransactionValidator validator() {
+        // the repository is also created without Spring, e.g. by the benchmarks
+        if (validator == null) {
+            validator = new TransactionValidator();
+        }
+        return validator;
     }
 
     /**
@@ -73,7 +207,20 @@ public class DBRepository
      * @return true/false
      */
     public Transaction getTransactionById(Long transactionId) {
-        return transactionListById.get(transactionId);
+        Transaction transaction = transactionListById.get(transactionId);
+
+        if (transaction == null && transactionId != null) {
+            MappedTransactionSnapshot snapshot = loadingSnapshot;
+
+            if (snapshot != null) {
+                int position = snapshot.positionOf(transactionId);
+                return position >= 0 ? snapshot.transactionAt(position) : null;
+            }
+            // the load may have finished after the first lookup
+            transaction = transactionListById.get(transactionId);
+        }
+
+        return transaction;
     }
 
     /**
@@ -82,7 +229,7 @@ public class DBRepository
      * @return true/false
      */
     public boolean transactionExists(Long transactionId) {
-        return transactionListById.containsKey(transactionId);
+        return getTransactionById(transactionId) != null;
     }
 
     /**
@@ -99,7 +246,8 @@ public class DBRepository
     /**
      * Add a Transaction to the memory
      * Assuming, that a valid transaction will always produce a correct result for simplicities sake.
-     * This method is NOT Transaction-Safe!!
+     * All indexes are updated while holding the lock of the transaction-ID. The transaction is
+     * published in transactionListById last, so a transaction found by its ID is always complete.
      *
      * @param transaction
      * @return
@@ -108,22 +256,467 @@ public class DBRepository
     public boolean addTransaction(Transaction transaction) throws TransactionInvalidException {
         // Check transaction mandatory fields
         checkTransaction(transaction);
+        awaitSnapshotLoaded();
+
+        Transaction previous = lockAndStoreTransaction(transaction);
+        awaitDurable();
+
+        // false if the transaction was already a child of its parent
+        return previous == null || !transaction.hasParentId() || !isSameParent(previous, transaction);
+    }
+
+    /**
+     * Validates and stores a transaction in a single pass. Whether it is created or updated is
+     * decided while holding the lock of its transaction-ID, so concurrent writers of the same ID
+     * get exactly one CREATED.
+     * @param transaction
+     * @return UpsertResult CREATED, UPDATED or REJECTED if it is invalid, its parent is missing
+     * or it would create a cycle
+     */
+    public UpsertResult upsertTransaction(Transaction transaction) {
+        if (!transactionIsValid(transaction)) {
+            return UpsertResult.REJECTED;
+        }
+        awaitSnapshotLoaded();
+
+        Transaction previous;
+        try {
+            previous = lockAndStoreTransaction(transaction);
+        } catch (TransactionInvalidException e) {
+            return UpsertResult.REJECTED;
+        }
+        awaitDurable();
+
+        return previous == null ? UpsertResult.CREATED : UpsertResult.UPDATED;
+    }
+
+    /**
+     * Stores a transaction while holding the lock of its transaction-ID and the structure lock
+     * @param transaction
+     * @return the transaction that was replaced or null if it is a new one
+     * @throws TransactionInvalidException
+     */
+    private Transaction lockAndStoreTransaction(Transaction transaction) throws TransactionInvalidException {
+        while (true) {
+            Transaction previous = transactionListById.get(transaction.transactionIdValue());
+            boolean moved = isMove(previous, transaction);
+            Lock structure = moved ? structureLock.writeLock() : structureLock.readLock();
+            Lock lock = lockFor(transaction.transactionIdValue());
+
+            structure.lock();
+            lock.lock();
+            try {
+                // another writer may have got in between, a move needs the exclusive lock
+                Transaction current = transactionListById.get(transaction.transactionIdValue());
+                if (!moved && isMove(current, transaction)) {
+                    continue;
+                }
+
+                storeTransaction(current, transaction);
+                return current;
+            } finally {
+                lock.unlock();
+                structure.unlock();
+            }
+        }
+    }
 
+    /**
+     * Updates all indexes for a transaction. Must be called with the lock of the transaction-ID
+     * or the structure lock held exclusively.
+     * @param previous the transaction that is replaced or null if it is a new one
+     * @param transaction
+     * @throws TransactionInvalidException
+     */
+    private void storeTransaction(Transaction previous, Transaction transaction) throws TransactionInvalidException {
         // if we have a parent-id, this parent must already be present of course.
-        if (transaction.getParentId() != null && !transactionExists(transaction.getParentId())) {
+        if (transaction.hasParentId() && !transactionListById.containsKey(transaction.parentIdValue())) {
+            countRejection("parentMissing");
+            throw new TransactionInvalidException();
+        }
+
+        // re-parenting a transaction below one of its own descendants would create a cycle
+        if (previous != null && !isSameParent(previous, transaction) && createsCycle(transaction)) {
+            countRejection("cycle");
             throw new TransactionInvalidException();
         }
 
-        transactionListById.put(transaction.getTransactionId().longValue(), transaction);
-        boolean transactionByTypeOk = addTransactionByType(transaction);
+        TransactionLog log = transactionLog;
+        if (log != null) {
+            log.append(transaction);
+        }
+
+        // the paths to the root are collected while the sums are propagated
+        Path path = paths.get();
+        Path previousPath = isSameParent(previous != null ? previous : transaction, transaction)
+                ? null : previousPaths.get();
+
+        try {
+            updateTransactionSums(previous, transaction, path, previousPath);
+            addTransactionByType(previous, transaction);
+
+            if (previous != null && !isSameParent(previous, transaction)) {
+                removeChildTransaction(previous);
+            }
+            if (transaction.hasParentId())
+            {
+                addChildTransaction(transaction);
+            }
+
+            transactionListById.put(transaction);
+            publishWrite(previous, transaction, path, previousPath);
+        } finally {
+            path.clear();
+            if (previousPath != null) {
+                previousPath.clear();
+            }
+        }
+    }
+
+    /**
+     * Adds a batch of Transactions while holding the structure lock exclusively.
+     * The transactions are applied in the order of the batch, see Batch.
+     *
+     * @param transactions
+     * @return StatusCode OK or ERROR for every transaction, in the order of the batch
+     */
+    public StatusCode[] addTransactions(List<Transaction> transactions) {
+        Batch batch = new Batch();
+        batch.add(transactions);
+        batch.finish();
 
-        if (transaction.getParentId() != null)
-        {
-            boolean transactionChild = addChildTransaction(transaction);
-            return transactionByTypeOk && transactionChild;
+        StatusCode[] results = new StatusCode[transactions.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = batch.result(i);
         }
+        return results;
+    }
 
-        return transactionByTypeOk;
+    /**
+     * Starts a batch that is added in chunks, so a large batch neither has to be held in memory
+     * nor holds the structure lock for its whole length
+     * @return Batch
+     */
+    public Batch startBatch() {
+        return new Batch();
+    }
+
+    /**
+     * Applies the transactions of a batch in the order of the batch, as if they were put one after
+     * another. A transaction whose parent is not stored yet waits for a later transaction of the batch
+     * with that ID, so parents may appear anywhere in the batch. A later transaction with the same ID
+     * as a waiting one waits behind it, so the last one of an ID always wins. Whatever still waits at
+     * the end of the batch has no parent or is part of a cycle and is rejected.
+     * Only the waiting transactions are kept between chunks. Not thread safe.
+     */
+    public final class Batch
+    {
+        private StatusCode[] results = new StatusCode[16];
+        private int count;
+        // the leading transactions whose results are known
+        private int resolved;
+
+        // the transactions waiting for their parent or behind an earlier one with the same ID
+        private final Map<Integer, Transaction> waiting = new HashMap<>();
+        // batch positions waiting for their parent, by the ID of the parent
+        private final Map<Long, List<Integer>> children = new HashMap<>();
+        // the batch position waiting for its parent by transaction-ID, later ones queue behind it
+        private final Map<Long, Integer> waitingIds = new HashMap<>();
+        private final Map<Long, Deque<Integer>> laterOccurrences = new HashMap<>();
+
+        private Batch() {
+        }
+
+        /**
+         * Applies the next chunk of the batch while holding the structure lock exclusively
+         * @param transactions
+         */
+        public void add(List<Transaction> transactions) {
+            awaitSnapshotLoaded();
+            structureLock.writeLock().lock();
+            try {
+                for (Transaction transaction : transactions) {
+                    if (count == results.length) {
+                        results = Arrays.copyOf(results, count * 2);
+                    }
+                    int index = count++;
+                    Long transactionId = transaction.getTransactionId();
+
+                    if (transactionId != null && waitingIds.containsKey(transactionId)) {
+                        waiting.put(index, transaction);
+                        laterOccurrences.computeIfAbsent(transactionId, id -> new ArrayDeque<>()).add(index);
+                    } else {
+                        apply(index, transaction);
+                    }
+                }
+            } finally {
+                structureLock.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Waits until the transactions applied so far are durable, so their results can be passed on
+         * @return the number of leading transactions of the batch whose results are known
+         */
+        public int awaitResolved() {
+            awaitDurable();
+
+            while (resolved < count && results[resolved] != null) {
+                resolved++;
+            }
+            return resolved;
+        }
+
+        /**
+         * Rejects the transactions that are still waiting and waits until the batch is durable,
+         * afterwards the results of all transactions are known
+         */
+        public void finish() {
+            for (int i = resolved; i < count; i++) {
+                if (results[i] == null) {
+                    results[i] = StatusCode.ERROR;
+                }
+            }
+
+            waiting.clear();
+            children.clear();
+            waitingIds.clear();
+            laterOccurrences.clear();
+            awaitResolved();
+        }
+
+        /**
+         * @param index the position in the batch
+         * @return StatusCode OK or ERROR, null if the transaction still waits for its parent
+         */
+        public StatusCode result(int index) {
+            return results[index];
+        }
+
+        private void apply(int index, Transaction transaction) {
+            Deque<Integer> released = new ArrayDeque<>();
+            applyOne(index, transaction, released);
+
+            while (!released.isEmpty()) {
+                int i = released.poll();
+                applyOne(i, waiting.remove(i), released);
+            }
+        }
+
+        private void applyOne(int index, Transaction transaction, Deque<Integer> released) {
+            Long transactionId = transaction.getTransactionId();
+
+            if (transaction.hasParentId() && transactionListById.get(transaction.parentIdValue()) == null) {
+                waiting.put(index, transaction);
+                children.computeIfAbsent(transaction.parentIdValue(), id -> new ArrayList<>()).add(index);
+                if (transactionId != null) {
+                    waitingIds.put(transactionId, index);
+                }
+                return;
+            }
+
+            try {
+                checkTransaction(transaction);
+                storeTransaction(transactionListById.get(transaction.transactionIdValue()), transaction);
+                results[index] = StatusCode.OK;
+
+                List<Integer> waitingChildren = children.remove(transactionId);
+                if (waitingChildren != null) {
+                    released.addAll(waitingChildren);
+                }
+            } catch (TransactionInvalidException e) {
+                results[index] = StatusCode.ERROR;
+            }
+
+            if (transactionId != null) {
+                waitingIds.remove(transactionId, index);
+                Deque<Integer> later = laterOccurrences.get(transactionId);
+
+                if (later != null && !waitingIds.containsKey(transactionId)) {
+                    // the next transaction with this ID goes before anything else that was released
+                    released.addFirst(later.poll());
+                    if (later.isEmpty()) {
+                        laterOccurrences.remove(transactionId);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Attaches the log every stored transaction is written to, null to detach it
+     * @param log
+     */
+    public void setTransactionLog(TransactionLog log) {
+        transactionLog = log;
+    }
+
+    /**
+     * Waits until the attached log has made the stored transactions durable
+     */
+    private void awaitDurable() {
+        TransactionLog log = transactionLog;
+        if (log != null) {
+            log.awaitDurable();
+        }
+    }
+
+    /**
+     * Takes a snapshot of all transactions. Writers are blocked while the log is rotated and the
+     * transactions are collected, so the snapshot contains exactly the log segments before the new one.
+     * The transactions are collected parents first together with their subtree sums.
+     * @param log the attached log
+     * @return TransactionSnapshot
+     * @throws IOException
+     */
+    public TransactionSnapshot createSnapshot(TransactionLog log) throws IOException {
+        awaitSnapshotLoaded();
+        structureLock.writeLock().lock();
+        try {
+            long logSegment = log.rotate();
+            int count = transactionListById.size();
+
+            long[] transactionIds = new long[count];
+            double[] amounts = new double[count];
+            long[] parentIds = new long[count];
+            boolean[] hasParent = new boolean[count];
+            double[] sums = new double[count];
+            int[] typeIds = new int[count];
+            List<String> types = new ArrayList<>();
+            Map<String, Integer> typeDictionary = new HashMap<>();
+
+            // the roots are followed by their descendants level by level
+            int position = 0;
+            List<Transaction> roots = new ArrayList<>();
+            transactionListById.forEachValue(transaction -> {
+                if (!transaction.hasParentId()) {
+                    roots.add(transaction);
+                }
+            });
+            for (Transaction root : roots) {
+                transactionIds[position++] = root.transactionIdValue();
+            }
+
+            for (int i = 0; i < position; i++) {
+                Transaction transaction = transactionListById.get(transactionIds[i]);
+                amounts[i] = transaction.amountValue();
+                parentIds[i] = transaction.parentIdValue();
+                hasParent[i] = transaction.hasParentId();
+                sums[i] = transactionSums.get(transaction.transactionIdValue()).sum();
+
+                Integer typeId = typeDictionary.get(transaction.getType());
+                if (typeId == null) {
+                    typeId = types.size();
+                    typeDictionary.put(transaction.getType(), typeId);
+                    types.add(transaction.getType());
+                }
+                typeIds[i] = typeId;
+
+                LongOrderedSet childIds = transactionWithChilds.get(transaction.transactionIdValue());
+                if (childIds != null) {
+                    for (long childId : childIds.toArray()) {
+                        transactionIds[position++] = childId;
+                    }
+                }
+            }
+
+            return new TransactionSnapshot(logSegment, position, transactionIds, amounts, parentIds,
+                    hasParent, sums, typeIds, types);
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Builds the indexes from a snapshot. The snapshot is trusted, so its transactions are neither
+     * validated nor logged, and the subtree sums are taken as they are.
+     * @param snapshot
+     */
+    public void loadSnapshot(MappedTransactionSnapshot snapshot) {
+        structureLock.writeLock().lock();
+        try {
+            long version = writeSequence.incrementAndGet();
+
+            for (int i = 0; i < snapshot.size(); i++) {
+                Transaction transaction = snapshot.transactionAt(i);
+
+                // parents come first, so the sum of the parent is already there
+                SubtreeSum sum = new SubtreeSum(transaction.transactionIdValue());
+                sum.setParent(parentSumOf(transaction));
+                sum.add(snapshot.sumAt(i));
+                transactionSums.put(transaction.transactionIdValue(), sum);
+                addTransactionByType(null, transaction);
+                addChildTransaction(transaction);
+                transactionListById.put(transaction);
+
+                sum.transactionVersion = version;
+                sum.version = version;
+            }
+
+            for (int typeId = 0; typeId < typeDictionary.size(); typeId++) {
+                typeVersionOf(typeId).set(version);
+            }
+            sumCache.clear();
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Loads a snapshot in a background thread and closes it afterwards. Lookups by ID are answered
+     * from the snapshot meanwhile, so the snapshot must not be followed by any log records.
+     * @param snapshot
+     */
+    public void loadSnapshotInBackground(MappedTransactionSnapshot snapshot) {
+        CountDownLatch loaded = new CountDownLatch(1);
+        snapshotLoaded = loaded;
+        loadingSnapshot = snapshot;
+
+        Thread thread = new Thread(() -> {
+            try {
+                loadSnapshot(snapshot);
+            } finally {
+                loadingSnapshot = null;
+                loaded.countDown();
+                try {
+                    snapshot.close();
+                } catch (IOException e) {
+                    // the mapped columns are released by the garbage collector anyway
+                }
+            }
+        }, "snapshot-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Waits until a snapshot loading in the background is completely loaded
+     */
+    public void awaitSnapshotLoaded() {
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                snapshotLoaded.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the lock stripe guarding a transaction-ID
+     * @param transactionId
+     * @return Lock
+     */
+    private Lock lockFor(long transactionId) {
+        int hash = Long.hashCode(transactionId);
+        return transactionLocks[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
     }
 
     /**
@@ -132,7 +725,8 @@ public class DBRepository
      * @return true/false
      */
     public boolean transactionListContainsType(String type) {
-        return transactionListByType.containsKey(type);
+        awaitSnapshotLoaded();
+        return transactionListByType.containsKey(typeDictionary.lookup(type));
     }
 
     /**
@@ -141,7 +735,176 @@ public class DBRepository
      * @return List of Transactions
      */
     public List<Transaction> getTransactionListByType(String type) {
-        return transactionListByType.get(type);
+        awaitSnapshotLoaded();
+        return toTransactions(transactionIdsOfType(type));
+    }
+
+    /**
+     * Returns the transaction-IDs of a specific transaction type in insertion order. The IDs are
+     * fetched from the type index in chunks, so the memory needed does not grow with the type.
+     * @param type
+     * @param after only IDs following this transaction-ID are returned, null to start at the beginning
+     * @param cursor only IDs added after the ID with this sequence number are returned, null to ignore it.
+     *               Unlike after it stays valid when its ID leaves the type.
+     * @return LongOrderedSet.Cursor or null if the type does not exist
+     */
+    public LongOrderedSet.Cursor getTransactionIdsByType(String type, Long after, Long cursor) {
+        awaitSnapshotLoaded();
+        LongOrderedSet transactionIds = transactionIdsOfType(type);
+
+        if (transactionIds == null) {
+            return null;
+        }
+
+        if (cursor != null) {
+            return transactionIds.iteratorAfterSequence(cursor, ITERATOR_CHUNK_SIZE);
+        }
+        return after == null ? transactionIds.iterator(ITERATOR_CHUNK_SIZE)
+                : transactionIds.iteratorAfter(after, ITERATOR_CHUNK_SIZE);
+    }
+
+    /**
+     * Checks if a transaction belongs to a specific transaction type
+     * @param type
+     * @param transactionId
+     * @return true/false
+     */
+    public boolean transactionTypeContains(String type, long transactionId) {
+        awaitSnapshotLoaded();
+        LongOrderedSet transactionIds = transactionIdsOfType(type);
+
+        if (transactionIds == null) {
+            return false;
+        }
+
+        synchronized (transactionIds) {
+            return transactionIds.contains(transactionId);
+        }
+    }
+
+    /**
+     * Returns the number of transactions of a specific transaction type
+     * @param type
+     * @return number of transactions, 0 if the type does not exist
+     */
+    public int getTransactionCountByType(String type) {
+        awaitSnapshotLoaded();
+        LongOrderedSet transactionIds = transactionIdsOfType(type);
+
+        if (transactionIds == null) {
+            return 0;
+        }
+
+        synchronized (transactionIds) {
+            return transactionIds.size();
+        }
+    }
+
+    /**
+     * Returns count, sum, min and max of the amounts of a specific transaction type.
+     * The aggregates are maintained on every insert and update, so this is a simple lookup, unless
+     * the minimum or maximum was removed since the last read. Then both are recomputed from the
+     * transactions of the type while holding the structure lock exclusively, so no write is half done.
+     * @param type
+     * @return StatsResponse or null if the type does not exist
+     */
+    public StatsResponse getTransactionStatsByType(String type) {
+        awaitSnapshotLoaded();
+        int typeId = typeDictionary.lookup(type);
+        TypeStats stats = transactionStatsByType.get(typeId);
+
+        if (stats == null) {
+            return null;
+        }
+
+        boolean exactExtremes;
+        synchronized (stats) {
+            exactExtremes = stats.hasExactExtremes();
+        }
+
+        if (!exactExtremes) {
+            // the structure lock before the monitor, writers take them in the same order
+            structureLock.writeLock().lock();
+            try {
+                synchronized (stats) {
+                    if (!stats.hasExactExtremes()) {
+                        recomputeExtremes(typeId, stats);
+                    }
+                }
+            } finally {
+                structureLock.writeLock().unlock();
+            }
+        }
+
+        synchronized (stats) {
+            return new StatsResponse(stats.getCount(), stats.getSum(), stats.getMin(), stats.getMax());
+        }
+    }
+
+    private void recomputeExtremes(int typeId, TypeStats stats) {
+        LongOrderedSet transactionIds = transactionListByType.get(typeId);
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        if (transactionIds != null) {
+            PrimitiveIterator.OfLong ids = transactionIds.iterator(ITERATOR_CHUNK_SIZE);
+
+            while (ids.hasNext()) {
+                double amount = transactionListById.get(ids.nextLong()).amountValue();
+                min = Math.min(min, amount);
+                max = Math.max(max, amount);
+            }
+        }
+
+        stats.setExtremes(min, max);
+    }
+
+    /**
+     * Resolves a type with a single dictionary lookup, the type index itself is keyed by the type-ID
+     * @param type
+     * @return the IDs of the type or null if the type does not exist
+     */
+    private LongOrderedSet transactionIdsOfType(String type) {
+        int typeId = typeDictionary.lookup(type);
+        return typeId == TypeDictionary.NO_TYPE ? null : transactionListByType.get(typeId);
+    }
+
+    /**
+     * Returns the number of transactions in the repository
+     * @return int
+     */
+    public int getTransactionCount() {
+        return transactionListById.size();
+    }
+
+    /**
+     * Returns the number of transaction types in the repository
+     * @return int
+     */
+    public int getTypeCount() {
+        return transactionListByType.size();
+    }
+
+    /**
+     * Returns the number of transactions that have children
+     * @return int
+     */
+    public int getParentCount() {
+        return transactionWithChilds.size();
+    }
+
+    /**
+     * Passes the number of children of every parent to a consumer
+     * @param consumer
+     */
+    public void forEachFanOut(IntConsumer consumer) {
+        transactionWithChilds.forEachValue(childIds -> {
+            int size;
+            synchronized (childIds) {
+                size = childIds.size();
+            }
+            consumer.accept(size);
+        });
     }
 
     /**
@@ -150,37 +913,372 @@ public class DBRepository
      * @return
      */
     public List<Transaction> getChildTransactions(Long transactionId) {
-        return transactionWithChilds.get(transactionId);
+        awaitSnapshotLoaded();
+        return toTransactions(transactionWithChilds.get(transactionId));
+    }
+
+    /**
+     * Resolves a set of transaction-IDs of the repository to a List of Transactions in insertion order
+     * @param transactionIds
+     * @return List of Transactions or null
+     */
+    private List<Transaction> toTransactions(LongOrderedSet transactionIds) {
+        if (transactionIds == null) {
+            return null;
+        }
+
+        long[] ids;
+        synchronized (transactionIds) {
+            ids = transactionIds.toArray();
+        }
+
+        List<Transaction> transactions = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Transaction transaction = transactionListById.get(id);
+
+            // transactions that are still being added are not published yet
+            if (transaction != null) {
+                transactions.add(transaction);
+            }
+        }
+
+        return transactions;
     }
 
     /**
-     * Calculates the Sum of all amounts of a transaction and all its child transactions
+     * Returns the Sum of all amounts of a transaction and all its child transactions.
+     * The sums are maintained incrementally by addTransaction, so this is a simple lookup.
      * @param transactionId
      * @return Double Sum of Amounts
      * @throws TransactionIdEmptyException
      */
     public Double getTransactionSumRecursive(Long transactionId) throws TransactionIdEmptyException {
-        Double sum = 0D;
+        if (transactionId == null) {
+            throw new TransactionIdEmptyException();
+        }
 
-        if (transactionId != null)
-        {
-            Transaction transaction = transactionListById.get(transactionId);
-            List<Transaction> childTransactions = transactionWithChilds.get(transactionId);
+        DoubleAdder sum = transactionSums.get(transactionId);
+        if (sum == null) {
+            MappedTransactionSnapshot snapshot = loadingSnapshot;
 
-            sum += transaction.getAmount();
+            if (snapshot != null) {
+                int position = snapshot.positionOf(transactionId);
+                return position >= 0 ? snapshot.sumAt(position) : null;
+            }
+            sum = transactionSums.get(transactionId);
+        }
 
-            if (childTransactions != null)
-            {
-                for (Transaction childTransaction : childTransactions)
-                {
-                    sum += getTransactionSumRecursive(childTransaction.getTransactionId());
-                }
+        return sum != null ? sum.sum() : null;
+    }
+
+    /**
+     * Returns the Sum of the amounts of a transaction and all its descendants of a specific type.
+     * There is no incremental sum per type, so the subtree is traversed, wide subtrees in parallel.
+     * @param transactionId
+     * @param type only transactions of this type are summed up
+     * @return Double Sum of Amounts or null if the transaction does not exist
+     * @throws TransactionIdEmptyException
+     * @throws SubtreeTooLargeException if the subtree has more than transactionservice.traversal.max-subtree-size transactions
+     * @throws TransactionCycleException
+     */
+    public Double getTransactionSumByType(Long transactionId, String type)
+            throws TransactionIdEmptyException, SubtreeTooLargeException, TransactionCycleException {
+        if (transactionId == null) {
+            throw new TransactionIdEmptyException();
+        }
+        awaitSnapshotLoaded();
+
+        // read before the traversal, a write in the subtree meanwhile changes it and the sum is never returned
+        SubtreeSum subtree = transactionSums.get(transactionId);
+        long version = subtree != null ? subtree.version : 0L;
+
+        Double cached = subtree != null ? sumCache.get(transactionId, type, version) : null;
+        if (cached != null) {
+            return cached;
+        }
+
+        DoubleAdder sum = new DoubleAdder();
+        int visited = newTraversal().traverse(transactionId, transaction -> {
+            if (type.equals(transaction.getType())) {
+                sum.add(transaction.amountValue());
             }
-        } else {
+        });
+
+        if (visited == 0) {
+            return null;
+        }
+
+        if (subtree != null) {
+            sumCache.put(transactionId, type, sum.sum(), version);
+        }
+        return sum.sum();
+    }
+
+    /**
+     * Returns the root of the tree a transaction belongs to and the depth of the transaction below it.
+     * Both are kept in the ancestor index, so this is a simple lookup.
+     * @param transactionId
+     * @return RootResponse or null if the transaction does not exist
+     * @throws TransactionIdEmptyException
+     */
+    public RootResponse getTransactionRoot(Long transactionId) throws TransactionIdEmptyException {
+        if (transactionId == null) {
+            throw new TransactionIdEmptyException();
+        }
+        awaitSnapshotLoaded();
+
+        // moves update root and depth of whole subtrees while holding the structure lock exclusively
+        structureLock.readLock().lock();
+        try {
+            SubtreeSum sum = transactionListById.containsKey(transactionId) ? transactionSums.get(transactionId) : null;
+            return sum != null ? new RootResponse(sum.rootId, sum.depth) : null;
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the IDs of the ancestors of a transaction by following the ancestor index, in O(depth)
+     * @param transactionId
+     * @return the IDs from the parent up to the root, empty for a root, or null if the transaction does not exist
+     * @throws TransactionIdEmptyException
+     */
+    public long[] getAncestorIds(Long transactionId) throws TransactionIdEmptyException {
+        if (transactionId == null) {
             throw new TransactionIdEmptyException();
         }
+        awaitSnapshotLoaded();
+
+        structureLock.readLock().lock();
+        try {
+            SubtreeSum sum = transactionListById.containsKey(transactionId) ? transactionSums.get(transactionId) : null;
+            if (sum == null) {
+                return null;
+            }
+
+            long[] ancestorIds = new long[sum.depth];
+            int i = 0;
+            for (SubtreeSum ancestor = sum.parent; ancestor != null; ancestor = ancestor.parent) {
+                ancestorIds[i++] = ancestor.transactionId;
+            }
+
+            return ancestorIds;
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the version of a transaction, which changes whenever the transaction is written.
+     * Read it before the transaction, it may then be older than the transaction but never newer.
+     * @param transactionId
+     * @return the version or 0 if the transaction does not exist
+     */
+    public long getTransactionVersion(long transactionId) {
+        SubtreeSum sum = transactionSums.get(transactionId);
+        return sum != null ? sum.transactionVersion : 0;
+    }
 
-        return sum;
+    /**
+     * Returns the version of the subtree of a transaction, which changes whenever a transaction in
+     * the subtree is written or moved into or out of it
+     * @param transactionId
+     * @return the version or 0 if the transaction does not exist
+     */
+    public long getSubtreeVersion(long transactionId) {
+        SubtreeSum sum = transactionSums.get(transactionId);
+        return sum != null ? sum.version : 0;
+    }
+
+    /**
+     * Returns the version of a transaction type, which changes whenever a transaction of the type
+     * is written or changes its type
+     * @param type
+     * @return the version or 0 if the type was never used
+     */
+    public long getTypeVersion(String type) {
+        int typeId = typeDictionary.lookup(type);
+        AtomicLong version = typeId == TypeDictionary.NO_TYPE ? null : typeVersions.get(typeId);
+        return version != null ? version.get() : 0;
+    }
+
+    /**
+     * Returns the cache of getTransactionSumByType, e.g. to read its counters
+     * @return SumCache
+     */
+    public SumCache getSumCache() {
+        return sumCache;
+    }
+
+    private SubtreeTraversal newTraversal() {
+        return new SubtreeTraversal(transactionListById::get, transactionWithChilds::get, maxSubtreeSize,
+                parallelThreshold, parallelThreshold > 0 ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * Checks if the parent of a transaction is the transaction itself or one of its descendants
+     * @param transaction
+     * @return true/false
+     */
+    private boolean createsCycle(Transaction transaction) {
+        SubtreeSum sum = transactionSums.get(transaction.transactionIdValue());
+
+        for (SubtreeSum ancestor = parentSumOf(transaction); ancestor != null; ancestor = ancestor.parent) {
+            if (ancestor == sum) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return the subtree sum of the parent of a transaction, null for a root
+     */
+    private SubtreeSum parentSumOf(Transaction transaction) {
+        return transaction.hasParentId() ? transactionSums.get(transaction.parentIdValue()) : null;
+    }
+
+    /**
+     * Updates the subtree sum of a transaction and propagates the difference to all of its ancestors.
+     * If the parent changed, the whole subtree sum is moved from the old ancestor chain to the new one
+     * and the subtree gets the root and depth of its new place.
+     * @param previous the transaction that was replaced or null if it is a new one
+     * @param transaction the transaction that was stored
+     * @param path collects the transaction and its ancestors
+     * @param previousPath collects the previous ancestors of a moved transaction, otherwise null
+     */
+    private void updateTransactionSums(Transaction previous, Transaction transaction, Path path, Path previousPath) {
+        if (previous == null) {
+            SubtreeSum sum = new SubtreeSum(transaction.transactionIdValue());
+            sum.setParent(parentSumOf(transaction));
+            sum.add(transaction.amountValue());
+            transactionSums.put(transaction.transactionIdValue(), sum);
+            path.add(sum);
+            propagateSum(sum, transaction.amountValue(), path);
+
+            if (metrics != null) {
+                metrics.recordDepth(sum.depth);
+            }
+            return;
+        }
+
+        SubtreeSum sum = transactionSums.get(transaction.transactionIdValue());
+        path.add(sum);
+
+        if (isSameParent(previous, transaction)) {
+            sum.add(transaction.amountValue() - previous.amountValue());
+            propagateSum(sum, transaction.amountValue() - previous.amountValue(), path);
+        } else {
+            // moves hold the structure lock exclusively, so the sum cannot change meanwhile
+            double previousSum = sum.sum();
+            long previousRootId = sum.rootId;
+            int previousDepth = sum.depth;
+
+            sum.add(transaction.amountValue() - previous.amountValue());
+            propagateSum(sum, -previousSum, previousPath);
+            sum.setParent(parentSumOf(transaction));
+            propagateSum(sum, sum.sum(), path);
+
+            if (sum.rootId != previousRootId || sum.depth != previousDepth) {
+                updateDescendants(sum);
+            }
+        }
+    }
+
+    /**
+     * Adds a delta to the sums of all ancestors of a transaction
+     * @param sum the subtree sum of the transaction whose parent chain is updated
+     * @param delta
+     * @param path collects the ancestors
+     */
+    private void propagateSum(SubtreeSum sum, double delta, Path path) {
+        for (SubtreeSum ancestor = sum.parent; ancestor != null; ancestor = ancestor.parent) {
+            ancestor.add(delta);
+            path.add(ancestor);
+        }
+    }
+
+    /**
+     * Updates root and depth of all descendants of a moved transaction. Only called while holding
+     * the structure lock exclusively.
+     * @param sum the subtree sum of the moved transaction
+     */
+    private void updateDescendants(SubtreeSum sum) {
+        Deque<SubtreeSum> parents = new ArrayDeque<>();
+        parents.push(sum);
+
+        while (!parents.isEmpty()) {
+            SubtreeSum parent = parents.pop();
+            LongOrderedSet childIds = transactionWithChilds.get(parent.transactionId);
+
+            if (childIds != null) {
+                for (long childId : childIds.toArray()) {
+                    SubtreeSum child = transactionSums.get(childId);
+                    child.setParent(parent);
+                    parents.push(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes the versions of a write. The transaction, its types and the subtrees along its path to
+     * the root get the new version. A move changes the subtrees of the previous and the new ancestors,
+     * so both paths get the new version. The cached sums are checked against the versions of the
+     * subtrees, so nothing has to be removed from the cache here.
+     * @param previous the transaction that was replaced or null if it is a new one
+     * @param transaction
+     * @param path the transaction and its ancestors
+     * @param previousPath the transaction and its previous ancestors if it moved, otherwise null
+     */
+    private void publishWrite(Transaction previous, Transaction transaction, Path path, Path previousPath) {
+        long version = writeSequence.incrementAndGet();
+
+        // the path starts with the transaction itself
+        path.sums[0].transactionVersion = version;
+        for (int i = 0; i < path.length; i++) {
+            path.sums[i].version = version;
+        }
+        if (previousPath != null) {
+            for (int i = 0; i < previousPath.length; i++) {
+                previousPath.sums[i].version = version;
+            }
+        }
+
+        typeVersionOf(typeDictionary.lookup(transaction.getType())).set(version);
+        if (previous != null && !previous.getType().equals(transaction.getType())) {
+            typeVersionOf(typeDictionary.lookup(previous.getType())).set(version);
+        }
+    }
+
+    private AtomicLong typeVersionOf(int typeId) {
+        return typeVersions.computeIfAbsent(typeId, id -> new AtomicLong());
+    }
+
+    private void countRejection(String reason) {
+        if (metrics != null) {
+            metrics.countRejection(reason);
+        }
+    }
+
+    /**
+     * Checks if an update moves a transaction to another parent or type, which removes it from
+     * index entries and is therefore done while holding the structure lock exclusively
+     * @param previous the stored transaction or null
+     * @param transaction
+     * @return true/false
+     */
+    private boolean isMove(Transaction previous, Transaction transaction) {
+        return previous != null
+                && (!isSameParent(previous, transaction) || !previous.getType().equals(transaction.getType()));
+    }
+
+    private boolean isSameParent(Transaction transaction, Transaction other) {
+        if (transaction.hasParentId() != other.hasParentId()) {
+            return false;
+        }
+        return !transaction.hasParentId() || transaction.parentIdValue() == other.parentIdValue();
     }
 
     /**
@@ -190,52 +1288,122 @@ public class DBRepository
      * @return
      */
     private boolean addChildTransaction(Transaction transaction) {
-        if (transaction.getParentId() != null) {
-            if (transactionWithChilds.containsKey(transaction.getParentId())) {
-                List<Transaction> transactionList = getChildTransactions(transaction.getParentId());
-
-                // Only add Transaction to Childs once
-                if (!transactionList.contains(transaction)) {
-                    transactionList.add(transaction);
-                } else {
-                    return false;
-                }
-            } else {
-                List<Transaction> transactionChilds = new ArrayList<>();
-                transactionChilds.add(transaction);
-                transactionWithChilds.put(transaction.getParentId(), transactionChilds);
-            }
+        if (transaction.hasParentId()) {
+            LongOrderedSet childIds = transactionWithChilds.computeIfAbsent(
+                    transaction.parentIdValue(), parentId -> new LongOrderedSet());
 
-            return true;
+            // Only add Transaction to Childs once
+            synchronized (childIds) {
+                return childIds.add(transaction.transactionIdValue());
+            }
         } else {
             return false;
         }
     }
 
     /**
-     * Adds a transaction to the transactionListByType HashMap
+     * Removes a transaction from the children of its parent, a parent without children is removed
+     * from the index. Only called while holding the structure lock exclusively.
+     * @param transaction the transaction as it was stored
+     */
+    private void removeChildTransaction(Transaction transaction) {
+        if (!transaction.hasParentId()) {
+            return;
+        }
+
+        LongOrderedSet childIds = transactionWithChilds.get(transaction.parentIdValue());
+        if (childIds == null) {
+            return;
+        }
+
+        synchronized (childIds) {
+            childIds.remove(transaction.transactionIdValue());
+
+            if (childIds.isEmpty()) {
+                transactionWithChilds.remove(transaction.parentIdValue());
+            }
+        }
+    }
+
+    /**
+     * Adds a transaction to the type index and updates the aggregates of its type. The type is
+     * replaced by the canonical String of the dictionary, so all transactions of a type share one.
+     * A transaction that is already present keeps its position, one that changed its type is removed
+     * from the previous type, a type without transactions is removed altogether.
+     * @param previous the transaction that is replaced or null if it is a new one
      * @param transaction
      */
-    private boolean addTransactionByType(Transaction transaction) {
-        List<Transaction> transactionList;
+    private boolean addTransactionByType(Transaction previous, Transaction transaction) {
+        int typeId = typeDictionary.idOf(transaction.getType());
+        transaction.setType(typeDictionary.typeOf(typeId));
 
-        if (transactionListByType.containsKey(transaction.getType()))
-        {
-            transactionList = transactionListByType.get(transaction.getType());
+        int previousTypeId = previous != null ? typeDictionary.lookup(previous.getType()) : TypeDictionary.NO_TYPE;
+
+        if (previous != null && previousTypeId != typeId) {
+            // type changes hold the structure lock exclusively, nobody adds to the previous type meanwhile
+            LongOrderedSet previousIds = transactionListByType.get(previousTypeId);
+
+            synchronized (previousIds) {
+                previousIds.remove(previous.transactionIdValue());
+
+                if (previousIds.isEmpty()) {
+                    transactionListByType.remove(previousTypeId);
+                    transactionStatsByType.remove(previousTypeId);
+                }
+            }
         }
-        else
-        {
-            transactionList = new ArrayList<>();
+
+        LongOrderedSet transactionIds = transactionListByType.computeIfAbsent(typeId, id -> new LongOrderedSet(true));
+
+        synchronized (transactionIds) {
+            transactionIds.add(transaction.transactionIdValue());
         }
 
-        if (transactionList.contains(transaction))
-        {
-            transactionList.set(transactionList.indexOf(transaction), transaction);
-        } else {
-            transactionList.add(transaction);
+        TypeStats stats = transactionStatsByType.computeIfAbsent(typeId, id -> new TypeStats());
+
+        if (previous != null && previousTypeId == typeId) {
+            // in one block, so the stats are never read without the transaction or with both amounts
+            synchronized (stats) {
+                stats.replace(previous.amountValue(), transaction.amountValue());
+            }
+            return true;
+        }
+
+        if (previous != null) {
+            TypeStats previousStats = transactionStatsByType.get(previousTypeId);
+
+            if (previousStats != null) {
+                synchronized (previousStats) {
+                    previousStats.remove(previous.amountValue());
+                }
+            }
+        }
+
+        synchronized (stats) {
+            stats.add(transaction.amountValue());
         }
-        transactionListByType.put(transaction.getType(), transactionList);
 
         return true;
     }
+
+    /**
+     * A transaction followed by its ancestors, the sums of their subtrees
+     */
+    private static final class Path
+    {
+        SubtreeSum[] sums = new SubtreeSum[16];
+        int length;
+
+        void add(SubtreeSum sum) {
+            if (length == sums.length) {
+                sums = Arrays.copyOf(sums, length * 2);
+            }
+            sums[length++] = sum;
+        }
+
+        void clear() {
+            Arrays.fill(sums, 0, length, null);
+            length = 0;
+        }
+    }
 }
@@ -0,0 +1,43 @@
+package net.rorarius.challenge.database;
+
+import net.rorarius.challenge.model.Transaction;
+
+import java.util.function.Consumer;
+
+/**
+ * TransactionStore keeping the Transaction objects in a LongIndex, lookups return the stored instance.
+ */
+public class HeapTransactionStore implements TransactionStore
+{
+    private final LongIndex<Transaction> transactions = new LongIndex<>();
+
+    @Override
+    public Transaction get(long transactionId) {
+        return transactions.get(transactionId);
+    }
+
+    @Override
+    public boolean containsKey(long transactionId) {
+        return transactions.containsKey(transactionId);
+    }
+
+    @Override
+    public void put(Transaction transaction) {
+        transactions.put(transaction.transactionIdValue(), transaction);
+    }
+
+    @Override
+    public int size() {
+        return transactions.size();
+    }
+
+    @Override
+    public void forEachValue(Consumer<? super Transaction> consumer) {
+        transactions.forEachValue(consumer);
+    }
+
+    @Override
+    public void clear() {
+        transactions.clear();
+    }
+}
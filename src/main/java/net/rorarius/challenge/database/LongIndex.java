@@ -0,0 +1,323 @@
+package net.rorarius.challenge.database;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Concurrent hash index with primitive long keys.
+ *
+ * The keys are stored in plain long[] arrays using open addressing with linear probing, so no
+ * Long-boxes and no entry objects are allocated per stored value. The index is split into segments,
+ * each guarded by its own StampedLock: writers of different segments do not block each other and
+ * readers use optimistic reads, so a lookup normally takes no lock at all.
+ *
+ * Values must not be null.
+ */
+public class LongIndex<V>
+{
+    private static final int SEGMENTS = 16;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private final Segment<V>[] segments;
+
+    public LongIndex() {
+        // generic arrays cannot be created, the array never leaves the index and only holds Segment<V>
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Segment<V>[] segments = new Segment[SEGMENTS];
+        this.segments = segments;
+
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    /**
+     * Returns the value for a key or null if the key is not present
+     * @param key
+     * @return V
+     */
+    public V get(long key) {
+        long hash = hash(key);
+        Segment<V> segment = segmentFor(hash);
+
+        long stamp = segment.lock.tryOptimisticRead();
+        V value = segment.find(key, hash);
+
+        if (!segment.lock.validate(stamp)) {
+            stamp = segment.lock.readLock();
+            try {
+                value = segment.find(key, hash);
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Checks if a key is present in the index
+     * @param key
+     * @return true/false
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Stores a value for a key
+     * @param key
+     * @param value
+     * @return the previous value or null
+     */
+    public V put(long key, V value) {
+        long hash = hash(key);
+        Segment<V> segment = segmentFor(hash);
+
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.insert(key, hash, value);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the value for a key and creates it if it is not present yet
+     * @param key
+     * @param factory creates the value for the key, called at most once
+     * @return V
+     */
+    public V computeIfAbsent(long key, LongFunction<V> factory) {
+        V value = get(key);
+
+        if (value != null) {
+            return value;
+        }
+
+        long hash = hash(key);
+        Segment<V> segment = segmentFor(hash);
+
+        long stamp = segment.lock.writeLock();
+        try {
+            value = segment.find(key, hash);
+
+            if (value == null) {
+                value = factory.apply(key);
+                segment.insert(key, hash, value);
+            }
+
+            return value;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes a key from the index
+     * @param key
+     * @return the removed value or null
+     */
+    public V remove(long key) {
+        long hash = hash(key);
+        Segment<V> segment = segmentFor(hash);
+
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.delete(key, hash);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the number of keys in the index
+     * @return int
+     */
+    public int size() {
+        int size = 0;
+
+        for (Segment<V> segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Passes every value of the index to a consumer, one segment at a time
+     * @param consumer
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<? super V> consumer) {
+        for (Segment<V> segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                for (Object value : segment.table.values) {
+                    if (value != null) {
+                        consumer.accept((V) value);
+                    }
+                }
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Removes all keys from the index
+     */
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                segment.table = new Table(INITIAL_CAPACITY);
+                segment.size = 0;
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private Segment<V> segmentFor(long hash) {
+        return segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+    }
+
+    private static long hash(long key) {
+        long hash = key * GOLDEN_RATIO;
+        return hash ^ (hash >>> 32);
+    }
+
+    /**
+     * Keys and values are swapped together on resize, so an optimistic reader always
+     * sees arrays of the same length.
+     */
+    private static final class Table
+    {
+        final long[] keys;
+        final Object[] values;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+        }
+    }
+
+    private static final class Segment<V>
+    {
+        final StampedLock lock = new StampedLock();
+        Table table = new Table(INITIAL_CAPACITY);
+        int size;
+
+        /**
+         * Probes for a key. May run without a lock, so the table is read exactly once and an empty
+         * slot ends the search, which is guaranteed because a table is never more than 3/4 full.
+         */
+        @SuppressWarnings("unchecked")
+        V find(long key, long hash) {
+            Table current = table;
+            int mask = current.keys.length - 1;
+
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                Object value = current.values[slot];
+
+                if (value == null) {
+                    return null;
+                }
+                if (current.keys[slot] == key) {
+                    return (V) value;
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        V insert(long key, long hash, V value) {
+            if ((size + 1) * 4L > table.keys.length * 3L) {
+                resize();
+            }
+
+            long[] keys = table.keys;
+            Object[] values = table.values;
+            int mask = keys.length - 1;
+
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                if (values[slot] == null) {
+                    keys[slot] = key;
+                    values[slot] = value;
+                    size++;
+                    return null;
+                }
+                if (keys[slot] == key) {
+                    V previous = (V) values[slot];
+                    values[slot] = value;
+                    return previous;
+                }
+            }
+        }
+
+        /**
+         * Backward shift deletion, keeps the probe sequences intact without tombstones. Optimistic
+         * readers may miss a shifted key meanwhile, they notice the write and retry under the lock.
+         */
+        @SuppressWarnings("unchecked")
+        V delete(long key, long hash) {
+            long[] keys = table.keys;
+            Object[] values = table.values;
+            int mask = keys.length - 1;
+            int slot = (int) hash & mask;
+
+            while (values[slot] != null && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (values[slot] == null) {
+                return null;
+            }
+
+            V previous = (V) values[slot];
+            int hole = slot;
+
+            for (int next = (hole + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+                int home = (int) hash(keys[next]) & mask;
+
+                // move the entry into the hole unless its home lies cyclically in (hole, next]
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+            }
+
+            values[hole] = null;
+            size--;
+
+            return previous;
+        }
+
+        void resize() {
+            Table previous = table;
+            Table resized = new Table(previous.keys.length * 2);
+            int mask = resized.keys.length - 1;
+
+            for (int i = 0; i < previous.keys.length; i++) {
+                if (previous.values[i] != null) {
+                    int slot = (int) hash(previous.keys[i]) & mask;
+
+                    while (resized.values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    resized.keys[slot] = previous.keys[i];
+                    resized.values[slot] = previous.values[i];
+                }
+            }
+
+            table = resized;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package net.rorarius.challenge.database;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Set of primitive longs which keeps the insertion order, used for the transaction-IDs
+ * per type and per parent.
+ *
+ * The IDs are appended to an order array and an open addressing hash maps every ID to its
+ * position there, so add, contains and remove are O(1). Removed positions are marked in a
+ * BitSet and compacted away once they make up half of the order array.
+ *
+ * Only sets created with sequence numbers can be iterated in chunks, like the IDs per type. There
+ * every ID also gets an increasing sequence number when it is added, which keeps its place in the
+ * order across compactions. Every such set starts its sequence numbers above those of the sets created
+ * before it, as long as no set sees more than 2^32 additions, so a sequence number used as cursor stays
+ * valid if a set is replaced. The sets per parent are only copied with toArray and save the 8 bytes.
+ * Not thread safe, the repository synchronizes on the set instance. The chunked iterator does the
+ * same for every chunk it fetches.
+ */
+public class LongOrderedSet
+{
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+    private static final AtomicLong FIRST_SEQUENCES = new AtomicLong();
+
+    private long[] order;
+    // sequence number of the ID at the same position in order, increasing along the order, or null
+    private long[] sequences;
+    private long nextSequence;
+    private int compactions;
+    private BitSet removed = new BitSet();
+    private int removedCount;
+    private int orderSize;
+    private int size;
+
+    // hash of ID -> position in order + 1, 0 marks an empty slot
+    private long[] keys;
+    private int[] positions;
+
+    public LongOrderedSet() {
+        this(false);
+    }
+
+    /**
+     * @param sequenced true to keep sequence numbers, which the chunked iterators need
+     */
+    public LongOrderedSet(boolean sequenced) {
+        order = new long[4];
+        keys = new long[8];
+        positions = new int[8];
+
+        if (sequenced) {
+            sequences = new long[4];
+            nextSequence = FIRST_SEQUENCES.getAndAdd(1L << 32);
+        }
+    }
+
+    /**
+     * Appends an ID to the set
+     * @param value
+     * @return true if the ID was added, false if it was already present
+     */
+    public boolean add(long value) {
+        if (slotOf(value) >= 0) {
+            return false;
+        }
+
+        if (orderSize == order.length) {
+            order = Arrays.copyOf(order, orderSize * 2);
+            if (sequences != null) {
+                sequences = Arrays.copyOf(sequences, orderSize * 2);
+            }
+        }
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+
+        order[orderSize] = value;
+        if (sequences != null) {
+            sequences[orderSize] = nextSequence++;
+        }
+        insert(value, orderSize);
+        orderSize++;
+        size++;
+
+        return true;
+    }
+
+    public boolean contains(long value) {
+        return slotOf(value) >= 0;
+    }
+
+    /**
+     * Removes an ID from the set
+     * @param value
+     * @return true if the ID was present
+     */
+    public boolean remove(long value) {
+        int slot = slotOf(value);
+
+        if (slot < 0) {
+            return false;
+        }
+
+        removed.set(positions[slot] - 1);
+        removedCount++;
+        deleteSlot(slot);
+        size--;
+
+        if (removedCount * 2 > orderSize) {
+            compact();
+        }
+
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns all IDs in insertion order
+     * @return long[]
+     */
+    public long[] toArray() {
+        long[] values = new long[size];
+        int count = 0;
+
+        for (int i = 0; i < orderSize; i++) {
+            if (!removed.get(i)) {
+                values[count++] = order[i];
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Returns the IDs in insertion order, fetched in chunks while synchronizing on the set. The
+     * iterator continues at the position following the last ID it returned, so it sees additions made
+     * meanwhile, even if that ID was removed. After a compaction the position is found again by the
+     * sequence number.
+     * @param chunkSize the number of IDs copied per chunk
+     * @return Cursor
+     * @throws IllegalStateException if the set keeps no sequence numbers
+     */
+    public Cursor iterator(int chunkSize) {
+        return new ChunkIterator(chunkSize, false, 0L, false, 0L);
+    }
+
+    /**
+     * Returns the IDs in insertion order that follow a given ID, see iterator(int)
+     * @param after the ID to start after, the iterator is empty if it is not present
+     * @param chunkSize the number of IDs copied per chunk
+     * @return Cursor
+     */
+    public Cursor iteratorAfter(long after, int chunkSize) {
+        return new ChunkIterator(chunkSize, true, after, false, 0L);
+    }
+
+    /**
+     * Returns the IDs in insertion order that were added after the ID with a given sequence number,
+     * see iterator(int). Unlike an ID the sequence number stays valid when its ID is removed.
+     * @param sequence the sequence number to start after, as returned by Cursor.sequence()
+     * @param chunkSize the number of IDs copied per chunk
+     * @return Cursor
+     */
+    public Cursor iteratorAfterSequence(long sequence, int chunkSize) {
+        return new ChunkIterator(chunkSize, false, 0L, true, sequence);
+    }
+
+    /**
+     * @return the position of the first ID with a higher sequence number, orderSize if there is none
+     */
+    private int positionAfter(long sequence) {
+        int position = Arrays.binarySearch(sequences, 0, orderSize, sequence);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    private int slotOf(long value) {
+        int mask = keys.length - 1;
+
+        for (int slot = hash(value) & mask; positions[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == value) {
+                return slot;
+            }
+        }
+
+        return -1;
+    }
+
+    private void insert(long value, int position) {
+        int mask = keys.length - 1;
+        int slot = hash(value) & mask;
+
+        while (positions[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = value;
+        positions[slot] = position + 1;
+    }
+
+    /**
+     * Backward shift deletion, keeps the probe sequences intact without tombstones
+     */
+    private void deleteSlot(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+
+        for (int next = (hole + 1) & mask; positions[next] != 0; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+
+            // move the entry into the hole unless its home lies cyclically in (hole, next]
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                positions[hole] = positions[next];
+                hole = next;
+            }
+        }
+
+        positions[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] previousKeys = keys;
+        int[] previousPositions = positions;
+
+        keys = new long[capacity];
+        positions = new int[capacity];
+
+        for (int i = 0; i < previousKeys.length; i++) {
+            if (previousPositions[i] != 0) {
+                insert(previousKeys[i], previousPositions[i] - 1);
+            }
+        }
+    }
+
+    private void compact() {
+        if (sequences != null) {
+            long[] liveSequences = new long[Math.max(size, 4)];
+            int count = 0;
+            for (int i = 0; i < orderSize; i++) {
+                if (!removed.get(i)) {
+                    liveSequences[count++] = sequences[i];
+                }
+            }
+            sequences = liveSequences;
+        }
+
+        order = toArray();
+        orderSize = size;
+        compactions++;
+        removed = new BitSet();
+        removedCount = 0;
+
+        Arrays.fill(positions, 0);
+        for (int i = 0; i < orderSize; i++) {
+            insert(order[i], i);
+        }
+
+        if (order.length == 0) {
+            order = new long[4];
+        }
+    }
+
+    private static int hash(long value) {
+        long hash = value * GOLDEN_RATIO;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * An iterator that also tells the sequence number of the ID it returned last
+     */
+    public interface Cursor extends PrimitiveIterator.OfLong
+    {
+        /**
+         * @return the sequence number of the ID returned by the last call of nextLong()
+         */
+        long sequence();
+    }
+
+    private final class ChunkIterator implements Cursor
+    {
+        private final long[] chunk;
+        private final long[] chunkSequences;
+        private int chunkSize;
+        private int index;
+        private boolean finished;
+
+        // the ID to start after, looked up on the first fetch
+        private boolean hasAfter;
+        private long after;
+
+        // where the next fetch continues, valid as long as there was no compaction
+        private int position;
+        private int compaction;
+        private boolean hasLastSequence;
+        private long lastSequence;
+
+        ChunkIterator(int chunkSize, boolean hasAfter, long after, boolean hasLastSequence, long lastSequence) {
+            if (sequences == null) {
+                throw new IllegalStateException("Only a set with sequence numbers can be iterated in chunks");
+            }
+            this.chunk = new long[chunkSize];
+            this.chunkSequences = new long[chunkSize];
+            this.hasAfter = hasAfter;
+            this.after = after;
+            this.hasLastSequence = hasLastSequence;
+            this.lastSequence = lastSequence;
+            // forces the position to be found by the sequence number on the first fetch
+            this.compaction = hasLastSequence ? -1 : 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (index < chunkSize) {
+                return true;
+            }
+            if (!finished) {
+                fetch();
+            }
+            return index < chunkSize;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return chunk[index++];
+        }
+
+        @Override
+        public long sequence() {
+            return chunkSequences[index - 1];
+        }
+
+        private void fetch() {
+            synchronized (LongOrderedSet.this) {
+                if (hasAfter) {
+                    int slot = slotOf(after);
+                    position = slot >= 0 ? positions[slot] : orderSize;
+                    compaction = compactions;
+                    hasAfter = false;
+                } else if (compaction != compactions) {
+                    position = hasLastSequence ? positionAfter(lastSequence) : 0;
+                    compaction = compactions;
+                }
+
+                int count = 0;
+                int i = position;
+                for (; i < orderSize && count < chunk.length; i++) {
+                    if (!removed.get(i)) {
+                        chunkSequences[count] = sequences[i];
+                        chunk[count++] = order[i];
+                    }
+                }
+
+                if (i > 0) {
+                    hasLastSequence = true;
+                    lastSequence = sequences[i - 1];
+                }
+                position = i;
+                chunkSize = count;
+            }
+
+            index = 0;
+            finished = chunkSize < chunk.length;
+        }
+    }
+}
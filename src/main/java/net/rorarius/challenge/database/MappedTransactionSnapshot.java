@@ -0,0 +1,180 @@
+package net.rorarius.challenge.database;
+
+import net.rorarius.challenge.model.Transaction;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only view of a TransactionSnapshot file.
+ *
+ * The columns are memory-mapped and read in place, so opening a snapshot costs the same for any
+ * number of transactions and pages are only read from disk once they are touched. Transactions
+ * can be looked up by binary searching the sorted IDs, which lets the repository answer reads
+ * while it still builds its indexes from the snapshot.
+ * Every column is mapped on its own, so a single column must stay below 2 GB.
+ */
+public class MappedTransactionSnapshot implements Closeable
+{
+    private final FileChannel channel;
+    private final long logSegment;
+    private final int count;
+    private final String[] types;
+
+    private final LongBuffer transactionIds;
+    private final DoubleBuffer amounts;
+    private final LongBuffer parentIds;
+    private final DoubleBuffer sums;
+    private final IntBuffer typeIds;
+    private final ByteBuffer hasParent;
+    private final LongBuffer sortedIds;
+    private final IntBuffer sortedPositions;
+
+    private MappedTransactionSnapshot(FileChannel channel) throws IOException {
+        this.channel = channel;
+
+        ByteBuffer header = map(0, Math.min(channel.size(), Integer.MAX_VALUE));
+        if (header.remaining() < 24 || header.getInt() != TransactionSnapshot.MAGIC) {
+            throw new IOException("Not a transaction snapshot");
+        }
+        int version = header.getInt();
+        if (version != TransactionSnapshot.VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+
+        logSegment = header.getLong();
+        count = header.getInt();
+        types = new String[header.getInt()];
+        for (int i = 0; i < types.length; i++) {
+            byte[] type = new byte[header.getInt()];
+            header.get(type);
+            // the dictionary makes every type a single shared String instance
+            types[i] = new String(type, StandardCharsets.UTF_8).intern();
+        }
+
+        long position = TransactionSnapshot.align(header.position());
+        transactionIds = map(position, 8L * count).asLongBuffer();
+        position += 8L * count;
+        amounts = map(position, 8L * count).asDoubleBuffer();
+        position += 8L * count;
+        parentIds = map(position, 8L * count).asLongBuffer();
+        position += 8L * count;
+        sums = map(position, 8L * count).asDoubleBuffer();
+        position += 8L * count;
+        typeIds = map(position, 4L * count).asIntBuffer();
+        position += 4L * count;
+        hasParent = map(position, count);
+        position = TransactionSnapshot.align(position + count);
+        sortedIds = map(position, 8L * count).asLongBuffer();
+        position += 8L * count;
+        sortedPositions = map(position, 4L * count).asIntBuffer();
+    }
+
+    /**
+     * Maps the snapshot of a directory
+     * @param directory
+     * @return the snapshot or null if the directory has none
+     * @throws IOException if the snapshot is corrupt or cannot be read
+     */
+    public static MappedTransactionSnapshot open(File directory) throws IOException {
+        File file = new File(directory, TransactionSnapshot.FILE_NAME);
+
+        if (!file.isFile()) {
+            return null;
+        }
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new MappedTransactionSnapshot(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The first log segment that is not contained in the snapshot
+     * @return long
+     */
+    public long getLogSegment() {
+        return logSegment;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Creates the Transaction at a position, parents come before their children
+     * @param position
+     * @return Transaction
+     */
+    public Transaction transactionAt(int position) {
+        Transaction transaction = new Transaction();
+        transaction.setTransactionId(transactionIds.get(position));
+        transaction.setAmount(amounts.get(position));
+        transaction.setType(types[typeIds.get(position)]);
+        transaction.setParentId(hasParent.get(position) == 1 ? parentIds.get(position) : null);
+
+        return transaction;
+    }
+
+    /**
+     * The sum of the amounts of a Transaction and all its descendants at a position
+     * @param position
+     * @return double
+     */
+    public double sumAt(int position) {
+        return sums.get(position);
+    }
+
+    /**
+     * Finds the position of a transaction-ID with a binary search
+     * @param transactionId
+     * @return the position or -1 if the snapshot does not contain the ID
+     */
+    public int positionOf(long transactionId) {
+        int low = 0;
+        int high = count - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long id = sortedIds.get(middle);
+
+            if (id < transactionId) {
+                low = middle + 1;
+            } else if (id > transactionId) {
+                high = middle - 1;
+            } else {
+                return sortedPositions.get(middle);
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Closes the file, the mapped columns stay readable until they are garbage collected
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private ByteBuffer map(long position, long size) throws IOException {
+        if (position + size > channel.size()) {
+            throw new IOException("Snapshot is truncated");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,339 @@
+package net.rorarius.challenge.database;
+
+import net.rorarius.challenge.model.Transaction;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * TransactionStore keeping the transactions as fixed-width records in direct memory.
+ *
+ * The records form an open addressing hash table with linear probing, split into segments like the
+ * LongIndex, so stored transactions neither occupy the heap nor have to be traced by the garbage
+ * collector. Types are replaced by their int from the TypeDictionary of the repository, which is
+ * shared with the type index. A Transaction object is only created when a lookup returns it.
+ *
+ * Record layout: long transactionId, double amount, long parentId, int typeId, int flags
+ *
+ * A ByteBuffer is indexed by int, so a segment holds at most MAX_CAPACITY records, which limits the
+ * store to about 1.6 billion transactions. The records are allocated outside the heap, so the
+ * memory for them is limited by -XX:MaxDirectMemorySize instead of -Xmx.
+ */
+public class OffHeapTransactionStore implements TransactionStore
+{
+    private static final int SEGMENTS = 64;
+    private static final int SEGMENT_SHIFT = 64 - Integer.numberOfTrailingZeros(SEGMENTS);
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private static final int RECORD_SIZE = 32;
+    private static final int AMOUNT_OFFSET = 8;
+    private static final int PARENT_OFFSET = 16;
+    private static final int TYPE_OFFSET = 24;
+    private static final int FLAGS_OFFSET = 28;
+
+    // the largest power of two of records whose byte offsets still fit into an int
+    static final int MAX_CAPACITY = Integer.highestOneBit(Integer.MAX_VALUE / RECORD_SIZE);
+
+    private static final int OCCUPIED = 1;
+    private static final int HAS_AMOUNT = 2;
+    private static final int HAS_PARENT = 4;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private final TypeDictionary types;
+
+    private final int maxCapacity;
+
+    /**
+     * @param types the dictionary of the repository the store belongs to
+     */
+    public OffHeapTransactionStore(TypeDictionary types) {
+        this(types, MAX_CAPACITY);
+    }
+
+    /**
+     * @param types the dictionary of the repository the store belongs to
+     * @param maxCapacity the number of records a segment may grow to, a power of two up to MAX_CAPACITY
+     */
+    OffHeapTransactionStore(TypeDictionary types, int maxCapacity) {
+        this.types = types;
+        this.maxCapacity = maxCapacity;
+
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    @Override
+    public Transaction get(long transactionId) {
+        long hash = hash(transactionId);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.lock.tryOptimisticRead();
+        Transaction transaction = segment.find(transactionId, hash);
+
+        if (!segment.lock.validate(stamp)) {
+            stamp = segment.lock.readLock();
+            try {
+                transaction = segment.find(transactionId, hash);
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+
+        return transaction;
+    }
+
+    @Override
+    public boolean containsKey(long transactionId) {
+        long hash = hash(transactionId);
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.lock.tryOptimisticRead();
+        boolean found = segment.slotOf(transactionId, hash) >= 0;
+
+        if (!segment.lock.validate(stamp)) {
+            stamp = segment.lock.readLock();
+            try {
+                found = segment.slotOf(transactionId, hash) >= 0;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+
+        return found;
+    }
+
+    @Override
+    public void put(Transaction transaction) {
+        int typeId = types.idOf(transaction.getType());
+        long hash = hash(transaction.transactionIdValue());
+        Segment segment = segmentFor(hash);
+
+        long stamp = segment.lock.writeLock();
+        try {
+            segment.insert(transaction, hash, typeId);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+
+        return size;
+    }
+
+    @Override
+    public void forEachValue(Consumer<? super Transaction> consumer) {
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                Table table = segment.table;
+
+                for (int slot = 0; slot < table.capacity; slot++) {
+                    if (table.isOccupied(slot)) {
+                        consumer.accept(table.read(slot));
+                    }
+                }
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            long stamp = segment.lock.writeLock();
+            try {
+                segment.table = new Table(INITIAL_CAPACITY);
+                segment.size = 0;
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> SEGMENT_SHIFT)];
+    }
+
+    private static long hash(long key) {
+        long hash = key * GOLDEN_RATIO;
+        return hash ^ (hash >>> 32);
+    }
+
+    /**
+     * The records of a segment, replaced as a whole on resize, so an optimistic reader always
+     * sees a buffer matching the capacity.
+     */
+    private final class Table
+    {
+        final ByteBuffer records;
+        final int capacity;
+
+        Table(int capacity) {
+            this.capacity = capacity;
+            this.records = ByteBuffer.allocateDirect(offset(capacity)).order(ByteOrder.nativeOrder());
+        }
+
+        /**
+         * The byte offset of a slot, computed as long and checked, so it can never wrap around
+         */
+        int offset(int slot) {
+            return Math.toIntExact((long) slot * RECORD_SIZE);
+        }
+
+        boolean isOccupied(int slot) {
+            return (records.getInt(offset(slot) + FLAGS_OFFSET) & OCCUPIED) != 0;
+        }
+
+        long idAt(int slot) {
+            return records.getLong(offset(slot));
+        }
+
+        Transaction read(int slot) {
+            int offset = offset(slot);
+            int flags = records.getInt(offset + FLAGS_OFFSET);
+            int typeId = records.getInt(offset + TYPE_OFFSET);
+
+            Transaction transaction = new Transaction();
+            transaction.setTransactionId(records.getLong(offset));
+            transaction.setAmount((flags & HAS_AMOUNT) != 0 ? records.getDouble(offset + AMOUNT_OFFSET) : null);
+            transaction.setParentId((flags & HAS_PARENT) != 0 ? records.getLong(offset + PARENT_OFFSET) : null);
+            // a torn optimistic read is discarded by the caller, it only has to stay in bounds
+            transaction.setType(types.typeOf(typeId));
+
+            return transaction;
+        }
+
+        void write(int slot, Transaction transaction, int typeId) {
+            int offset = offset(slot);
+            int flags = OCCUPIED;
+
+            if (transaction.getAmount() != null) {
+                flags |= HAS_AMOUNT;
+            }
+            if (transaction.hasParentId()) {
+                flags |= HAS_PARENT;
+            }
+
+            records.putLong(offset, transaction.transactionIdValue());
+            records.putDouble(offset + AMOUNT_OFFSET, transaction.amountValue());
+            records.putLong(offset + PARENT_OFFSET, transaction.parentIdValue());
+            records.putInt(offset + TYPE_OFFSET, typeId);
+            records.putInt(offset + FLAGS_OFFSET, flags);
+        }
+
+        void copy(int slot, Table target, int targetSlot) {
+            for (int i = 0; i < RECORD_SIZE; i += 8) {
+                target.records.putLong(target.offset(targetSlot) + i, records.getLong(offset(slot) + i));
+            }
+        }
+    }
+
+    private final class Segment
+    {
+        final StampedLock lock = new StampedLock();
+        Table table = new Table(INITIAL_CAPACITY);
+        int size;
+
+        /**
+         * Probes for a key. May run without a lock, so the table is read exactly once and the probe
+         * is bounded by the capacity in case of a concurrent modification.
+         */
+        int slotOf(long key, long hash) {
+            Table current = table;
+            int mask = current.capacity - 1;
+            int slot = (int) hash & mask;
+
+            for (int probes = 0; probes < current.capacity; probes++, slot = (slot + 1) & mask) {
+                if (!current.isOccupied(slot)) {
+                    return -1;
+                }
+                if (current.idAt(slot) == key) {
+                    return slot;
+                }
+            }
+
+            return -1;
+        }
+
+        Transaction find(long key, long hash) {
+            Table current = table;
+            int mask = current.capacity - 1;
+            int slot = (int) hash & mask;
+
+            for (int probes = 0; probes < current.capacity; probes++, slot = (slot + 1) & mask) {
+                if (!current.isOccupied(slot)) {
+                    return null;
+                }
+                if (current.idAt(slot) == key) {
+                    return current.read(slot);
+                }
+            }
+
+            return null;
+        }
+
+        void insert(Transaction transaction, long hash, int typeId) {
+            if ((size + 1) * 4L > table.capacity * 3L) {
+                resize();
+            }
+
+            long key = transaction.transactionIdValue();
+            int mask = table.capacity - 1;
+
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                if (!table.isOccupied(slot)) {
+                    table.write(slot, transaction, typeId);
+                    size++;
+                    return;
+                }
+                if (table.idAt(slot) == key) {
+                    table.write(slot, transaction, typeId);
+                    return;
+                }
+            }
+        }
+
+        void resize() {
+            Table previous = table;
+
+            if (previous.capacity >= maxCapacity) {
+                throw new IllegalStateException("An off-heap segment cannot hold more than "
+                        + (maxCapacity / 4 * 3) + " transactions, the store is full");
+            }
+
+            Table resized = new Table(previous.capacity * 2);
+            int mask = resized.capacity - 1;
+
+            for (int i = 0; i < previous.capacity; i++) {
+                if (previous.isOccupied(i)) {
+                    int slot = (int) hash(previous.idAt(i)) & mask;
+
+                    while (resized.isOccupied(slot)) {
+                        slot = (slot + 1) & mask;
+                    }
+                    previous.copy(i, resized, slot);
+                }
+            }
+
+            table = resized;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package net.rorarius.challenge.database;
+
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * The sum of the amounts in the subtree of a transaction, together with the versions of the subtree
+ * and of the transaction itself. Versions are numbers of the write sequence of the repository, so a
+ * version is never handed out twice and changes with every write that affects it.
+ *
+ * The sums also form the ancestor index: every sum points to the sum of the parent and knows the
+ * root and depth of its transaction, so walking up the tree needs no lookups by ID. Parent, root and
+ * depth only change when a transaction moves, which holds the structure lock exclusively.
+ */
+final class SubtreeSum extends DoubleAdder
+{
+    private static final long serialVersionUID = 1L;
+
+    final long transactionId;
+
+    volatile long version;
+    volatile long transactionVersion;
+
+    // null for a root
+    volatile SubtreeSum parent;
+    volatile long rootId;
+    volatile int depth;
+
+    SubtreeSum(long transactionId) {
+        this.transactionId = transactionId;
+        this.rootId = transactionId;
+    }
+
+    /**
+     * Attaches the sum below a parent, null makes it a root
+     */
+    void setParent(SubtreeSum parent) {
+        this.parent = parent;
+        this.rootId = parent != null ? parent.rootId : transactionId;
+        this.depth = parent != null ? parent.depth + 1 : 0;
+    }
+}
@@ -0,0 +1,225 @@
+package net.rorarius.challenge.database;
+
+import net.rorarius.challenge.exceptions.SubtreeTooLargeException;
+import net.rorarius.challenge.exceptions.TransactionCycleException;
+import net.rorarius.challenge.model.Transaction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Visits a transaction and all of its descendants.
+ *
+ * The traversal keeps its own stack of transactions instead of recursing, so the depth of the
+ * tree is only limited by the heap. A child is only followed from its current parent, as the
+ * children lists read without a lock may be outdated by a concurrent move. Therefore every
+ * transaction is reached at most once and a cycle can only lead back to the root, which stops the
+ * traversal just like exceeding maxSubtreeSize does.
+ *
+ * Children lists longer than parallelThreshold are split into chunks that are traversed in a
+ * ForkJoinPool, so a very wide subtree uses all cores. Small subtrees never leave the calling thread.
+ * The visitor must be thread safe in that case.
+ * The traversal does not lock the repository, transactions changed meanwhile may or may not be seen.
+ */
+class SubtreeTraversal
+{
+    private final LongFunction<Transaction> transactions;
+    private final LongFunction<LongOrderedSet> children;
+    private final int maxSubtreeSize;
+    private final int parallelThreshold;
+    private final ForkJoinPool pool;
+
+    SubtreeTraversal(LongFunction<Transaction> transactions, LongFunction<LongOrderedSet> children,
+                     int maxSubtreeSize, int parallelThreshold, ForkJoinPool pool) {
+        this.transactions = transactions;
+        this.children = children;
+        this.maxSubtreeSize = maxSubtreeSize;
+        this.parallelThreshold = parallelThreshold;
+        this.pool = pool;
+    }
+
+    /**
+     * Passes the transaction and all of its descendants to a visitor, parents before their children
+     * @param transactionId the root of the subtree
+     * @param visitor
+     * @return the number of transactions visited, 0 if the root does not exist
+     * @throws SubtreeTooLargeException if the subtree has more than maxSubtreeSize transactions
+     * @throws TransactionCycleException if the parents form a cycle
+     */
+    int traverse(long transactionId, Consumer<Transaction> visitor)
+            throws SubtreeTooLargeException, TransactionCycleException {
+        Transaction root = transactions.apply(transactionId);
+
+        if (root == null) {
+            return 0;
+        }
+
+        Walk walk = new Walk(transactionId, visitor);
+        walk.run(new Transaction[] {root}, 1, null);
+
+        Exception failure = walk.failure.get();
+        if (failure instanceof SubtreeTooLargeException) {
+            throw (SubtreeTooLargeException) failure;
+        }
+        if (failure instanceof TransactionCycleException) {
+            throw (TransactionCycleException) failure;
+        }
+
+        return walk.visited.get();
+    }
+
+    private long[] childrenOf(long transactionId) {
+        LongOrderedSet childIds = children.apply(transactionId);
+
+        if (childIds == null) {
+            return new long[0];
+        }
+
+        synchronized (childIds) {
+            return childIds.toArray();
+        }
+    }
+
+    /**
+     * The state of one traversal, shared by all threads taking part in it
+     */
+    private final class Walk
+    {
+        final long rootId;
+        final Consumer<Transaction> visitor;
+        final AtomicInteger visited = new AtomicInteger();
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        Walk(long rootId, Consumer<Transaction> visitor) {
+            this.rootId = rootId;
+            this.visitor = visitor;
+        }
+
+        /**
+         * Traverses the subtrees of the transactions on a stack
+         * @param forks collects the chunks to fork inside the pool, null on the calling thread
+         */
+        void run(Transaction[] stack, int top, List<ChildrenTask> forks) {
+            while (top > 0 && failure.get() == null) {
+                Transaction transaction = stack[--top];
+                stack[top] = null;
+
+                if (visited.incrementAndGet() > maxSubtreeSize) {
+                    failure.compareAndSet(null, new SubtreeTooLargeException(
+                            "Subtree of " + rootId + " exceeds " + maxSubtreeSize + " transactions"));
+                    return;
+                }
+
+                visitor.accept(transaction);
+
+                long id = transaction.transactionIdValue();
+                long[] childIds = childrenOf(id);
+
+                if (childIds.length > parallelThreshold && pool != null) {
+                    split(id, childIds, forks);
+                    continue;
+                }
+
+                for (long childId : childIds) {
+                    Transaction child = childOf(id, childId);
+
+                    if (child != null) {
+                        if (top == stack.length) {
+                            stack = Arrays.copyOf(stack, top * 2);
+                        }
+                        stack[top++] = child;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Resolves a child, null if it does not belong to the parent (any more)
+         */
+        Transaction childOf(long parentId, long childId) {
+            if (childId == rootId) {
+                failure.compareAndSet(null, new TransactionCycleException("Transaction " + rootId + " is its own ancestor"));
+                return null;
+            }
+
+            Transaction child = transactions.apply(childId);
+            return child != null && child.hasParentId() && child.parentIdValue() == parentId ? child : null;
+        }
+
+        void split(long parentId, long[] childIds, List<ChildrenTask> forks) {
+            List<ChildrenTask> chunks = new ArrayList<>();
+
+            for (int from = 0; from < childIds.length; from += parallelThreshold) {
+                chunks.add(new ChildrenTask(this, parentId, childIds, from,
+                        Math.min(from + parallelThreshold, childIds.length)));
+            }
+
+            if (forks == null) {
+                // the calling thread hands the chunks to the pool and waits for them
+                pool.invoke(new RecursiveAction() {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected void compute() {
+                        invokeAll(chunks);
+                    }
+                });
+            } else {
+                for (ChildrenTask chunk : chunks) {
+                    chunk.fork();
+                    forks.add(chunk);
+                }
+            }
+        }
+    }
+
+    /**
+     * Traverses the subtrees of a chunk of the children of a transaction
+     */
+    private final class ChildrenTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Walk walk;
+        private final long parentId;
+        private final long[] childIds;
+        private final int from;
+        private final int to;
+
+        ChildrenTask(Walk walk, long parentId, long[] childIds, int from, int to) {
+            this.walk = walk;
+            this.parentId = parentId;
+            this.childIds = childIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            Transaction[] stack = new Transaction[Math.max(16, to - from)];
+            int top = 0;
+
+            for (int i = from; i < to; i++) {
+                Transaction child = walk.childOf(parentId, childIds[i]);
+
+                if (child != null) {
+                    stack[top++] = child;
+                }
+            }
+
+            List<ChildrenTask> forks = new ArrayList<>();
+            walk.run(stack, top, forks);
+
+            for (ChildrenTask fork : forks) {
+                fork.join();
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package net.rorarius.challenge.database;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of subtree sums by type, keyed by the root of the subtree.
+ *
+ * Writers never touch the cache. Every sum is stored together with the version the subtree of its
+ * root had before the sum was computed, and it is only returned as long as the subtree still has
+ * that version. Versions are handed out once per write, so a sum computed concurrently to a write
+ * in the subtree never matches again, while writes to other subtrees leave it valid. Only readers
+ * take the monitor of the cache. All entries of a root are evicted together.
+ */
+public class SumCache
+{
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private int maxEntries;
+    private final LinkedHashMap<Long, Map<String, CachedSum>> sums = new LinkedHashMap<Long, Map<String, CachedSum>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Map<String, CachedSum>> eldest) {
+            if (size() > maxEntries) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public SumCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Changes the number of roots kept, 0 disables the cache
+     * @param maxEntries
+     */
+    public synchronized void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        sums.clear();
+    }
+
+    /**
+     * Returns the cached sum of a type in a subtree if the subtree did not change since it was computed
+     * @param transactionId the root of the subtree
+     * @param type
+     * @param version the current version of the subtree
+     * @return Double or null if it is not cached
+     */
+    public synchronized Double get(long transactionId, String type, long version) {
+        Map<String, CachedSum> sumsByType = sums.get(transactionId);
+        CachedSum sum = sumsByType != null ? sumsByType.get(type) : null;
+
+        if (sum != null && sum.version == version) {
+            hits.increment();
+            return sum.sum;
+        }
+
+        if (sum != null) {
+            sumsByType.remove(type);
+            if (sumsByType.isEmpty()) {
+                sums.remove(transactionId);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Stores a sum of a type in a subtree
+     * @param transactionId the root of the subtree
+     * @param type
+     * @param sum
+     * @param version the version of the subtree, must be read before the sum is computed
+     */
+    public synchronized void put(long transactionId, String type, double sum, long version) {
+        if (maxEntries == 0) {
+            return;
+        }
+
+        Map<String, CachedSum> sumsByType = sums.get(transactionId);
+        if (sumsByType == null) {
+            sumsByType = new HashMap<>(4);
+            sums.put(transactionId, sumsByType);
+        }
+        sumsByType.put(type, new CachedSum(sum, version));
+    }
+
+    public synchronized void clear() {
+        sums.clear();
+    }
+
+    public synchronized int size() {
+        return sums.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private static final class CachedSum
+    {
+        final double sum;
+        final long version;
+
+        CachedSum(double sum, long version) {
+            this.sum = sum;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package net.rorarius.challenge.database;
+
+import net.rorarius.challenge.model.Transaction;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of all stored Transactions.
+ *
+ * Records are appended to an in-memory buffer and written to the current segment file in groups:
+ * whoever syncs writes and forces everything appended so far, so concurrent writers waiting for
+ * durability share a single fsync. Each record carries a CRC32, a torn record at the end of a
+ * segment after a crash ends the replay of that segment. A failed write or force may leave such a
+ * torn record behind, so the log fails for good and rejects all further records.
+ *
+ * Record layout: int length, long transactionId, double amount, byte hasParent, long parentId,
+ * int typeLength, UTF-8 type, int crc
+ */
+public class TransactionLog implements Closeable
+{
+    public enum FsyncPolicy
+    {
+        // writers wait until their record is forced to disk
+        ALWAYS,
+        // records are written and forced by the periodic flush only
+        INTERVAL,
+        // records are written by the periodic flush, forcing is left to the operating system
+        NEVER
+    }
+
+    private static final String SEGMENT_PREFIX = "transactions-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int RECORD_HEADER_SIZE = 4;
+    private static final int RECORD_FIXED_SIZE = 8 + 8 + 1 + 8 + 4;
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+
+    private final File directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final Object syncLock = new Object();
+
+    private FileChannel channel;
+    private long segment;
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    // the buffer being written by the syncing thread is swapped with this one, guarded by syncLock
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private long appendedSequence;
+    // checksum of the appended records, guarded by the append lock
+    private final CRC32 crc = new CRC32();
+    private long syncedSequence;
+    // the first failed write, records after it would follow a torn record, so the log takes no more
+    private volatile IOException failure;
+
+    public TransactionLog(File directory, long segment, FsyncPolicy fsyncPolicy) throws IOException {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.segment = segment;
+        this.channel = openSegment(segment);
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    /**
+     * Appends a Transaction to the log buffer, no IO is done here
+     * @param transaction
+     * @return the sequence number of the record
+     * @throws UncheckedIOException if an earlier write of the log failed
+     */
+    public synchronized long append(Transaction transaction) {
+        if (failure != null) {
+            throw new UncheckedIOException("The transaction log failed", failure);
+        }
+
+        byte[] type = transaction.getType().getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_FIXED_SIZE + type.length;
+
+        if (buffer.remaining() < RECORD_HEADER_SIZE + length + 4) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length + 64));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+
+        int start = buffer.position();
+        buffer.putInt(length);
+        buffer.putLong(transaction.transactionIdValue());
+        buffer.putDouble(transaction.amountValue());
+        buffer.put((byte) (transaction.hasParentId() ? 1 : 0));
+        buffer.putLong(transaction.parentIdValue());
+        buffer.putInt(type.length);
+        buffer.put(type);
+
+        crc.reset();
+        crc.update(buffer.array(), start + RECORD_HEADER_SIZE, length);
+        buffer.putInt((int) crc.getValue());
+
+        return ++appendedSequence;
+    }
+
+    /**
+     * Waits until everything appended so far is durable according to the fsync policy.
+     * Only the ALWAYS policy does IO here, the other policies rely on the periodic flush.
+     * @throws UncheckedIOException if the records could not be written
+     */
+    public void awaitDurable() {
+        if (fsyncPolicy != FsyncPolicy.ALWAYS) {
+            return;
+        }
+
+        long sequence;
+        synchronized (this) {
+            sequence = appendedSequence;
+        }
+
+        try {
+            sync(sequence, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes all buffered records to the segment file and forces them unless the policy is NEVER.
+     * Called periodically by the persistence.
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        long sequence;
+        synchronized (this) {
+            sequence = appendedSequence;
+        }
+
+        sync(sequence, fsyncPolicy != FsyncPolicy.NEVER);
+    }
+
+    /**
+     * Closes the current segment and continues in a new one. Must not run concurrently with append,
+     * the repository calls it while it blocks all writers.
+     * @return the number of the new segment
+     * @throws IOException
+     */
+    public long rotate() throws IOException {
+        synchronized (syncLock) {
+            flush();
+            channel.close();
+            segment++;
+            channel = openSegment(segment);
+            return segment;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            flush();
+            channel.close();
+        }
+    }
+
+    private void sync(long sequence, boolean force) throws IOException {
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) {
+                return;
+            }
+            if (failure != null) {
+                throw new IOException("The transaction log failed", failure);
+            }
+
+            ByteBuffer pending;
+            long pendingSequence;
+
+            synchronized (this) {
+                pending = buffer;
+                pendingSequence = appendedSequence;
+                buffer = spare;
+            }
+
+            try {
+                pending.flip();
+                while (pending.hasRemaining()) {
+                    channel.write(pending);
+                }
+                if (force) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                // the records may be written in part, so they are dropped and the log fails for good
+                failure = e;
+                pending.clear();
+                spare = pending;
+                throw e;
+            }
+
+            syncedSequence = pendingSequence;
+            pending.clear();
+            spare = pending;
+        }
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(segmentFile(directory, number).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Returns the file of a log segment
+     * @param directory
+     * @param number
+     * @return File
+     */
+    public static File segmentFile(File directory, long number) {
+        return new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Returns the numbers of all log segments in a directory in ascending order
+     * @param directory
+     * @return long[]
+     */
+    public static long[] segments(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+
+        if (files == null) {
+            return new long[0];
+        }
+
+        long[] numbers = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            String name = files[i].getName();
+            numbers[i] = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        }
+
+        Arrays.sort(numbers);
+        return numbers;
+    }
+
+    /**
+     * Reads all complete records of a log segment in the order they were written
+     * @param file
+     * @param consumer receives every Transaction
+     * @return the number of records read
+     * @throws IOException
+     */
+    public static int replay(File file, Consumer<Transaction> consumer) throws IOException {
+        int count = 0;
+        CRC32 crc = new CRC32();
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte[] record = readRecord(input, crc);
+
+                if (record == null) {
+                    return count;
+                }
+
+                ByteBuffer data = ByteBuffer.wrap(record);
+                long transactionId = data.getLong();
+                double amount = data.getDouble();
+                boolean hasParent = data.get() == 1;
+                long parentId = data.getLong();
+                byte[] type = new byte[data.getInt()];
+                data.get(type);
+
+                consumer.accept(new Transaction(transactionId, amount, new String(type, StandardCharsets.UTF_8),
+                        hasParent ? parentId : null));
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Reads one record and checks its CRC
+     * @param crc the checksum reused for all records of a replay
+     * @return the record without length and CRC, null at the end of the log or at a torn record
+     */
+    private static byte[] readRecord(DataInputStream input, CRC32 crc) throws IOException {
+        try {
+            int length = input.readInt();
+
+            if (length < RECORD_FIXED_SIZE || length > MAX_RECORD_SIZE) {
+                return null;
+            }
+
+            byte[] record = new byte[length];
+            input.readFully(record);
+            int expected = input.readInt();
+
+            crc.reset();
+            crc.update(record, 0, length);
+
+            return (int) crc.getValue() == expected ? record : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+}
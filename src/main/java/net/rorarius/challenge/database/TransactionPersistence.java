@@ -0,0 +1,197 @@
+package net.rorarius.challenge.database;
+
+import net.rorarius.challenge.exceptions.TransactionInvalidException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes the DBRepository durable with a write-ahead log and periodic snapshots.
+ *
+ * On startup the latest snapshot is loaded and the log segments written after it are replayed,
+ * then the log is attached to the repository. A background thread flushes the log and takes a
+ * new snapshot periodically, after which the log segments it contains are deleted.
+ * A last snapshot is taken on shutdown, so a restart after a clean shutdown finds no log to replay.
+ * The snapshot is then loaded in the background and the repository serves lookups by ID from the
+ * memory-mapped snapshot meanwhile, so the time until the first request does not grow with its size.
+ * Disabled unless transactionservice.persistence.enabled is set.
+ */
+@Component
+public class TransactionPersistence
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TransactionPersistence.class);
+
+    @Autowired
+    DBRepository repository;
+
+    @Value("${transactionservice.persistence.enabled:false}")
+    boolean enabled;
+
+    @Value("${transactionservice.persistence.directory:data}")
+    File directory;
+
+    @Value("${transactionservice.persistence.fsync:ALWAYS}")
+    TransactionLog.FsyncPolicy fsyncPolicy;
+
+    @Value("${transactionservice.persistence.flush-interval-ms:100}")
+    long flushIntervalMs;
+
+    @Value("${transactionservice.persistence.snapshot-interval-seconds:300}")
+    long snapshotIntervalSeconds;
+
+    private TransactionLog transactionLog;
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create persistence directory " + directory);
+        }
+
+        long logSegment = recover();
+
+        transactionLog = new TransactionLog(directory, logSegment, fsyncPolicy);
+        repository.setTransactionLog(transactionLog);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transaction-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::snapshot, snapshotIntervalSeconds, snapshotIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        close(true);
+    }
+
+    /**
+     * Stops the background thread and closes the log
+     * @param takeSnapshot false leaves the log to be replayed, like after a crash
+     * @throws IOException
+     */
+    void close(boolean takeSnapshot) throws IOException {
+        if (transactionLog == null) {
+            return;
+        }
+
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (takeSnapshot) {
+            snapshot();
+        }
+
+        repository.setTransactionLog(null);
+        transactionLog.close();
+        transactionLog = null;
+    }
+
+    /**
+     * Writes a new snapshot and deletes the log segments contained in it
+     */
+    public void snapshot() {
+        try {
+            long started = System.currentTimeMillis();
+            TransactionSnapshot snapshot = repository.createSnapshot(transactionLog);
+            snapshot.write(directory);
+
+            for (long segment : TransactionLog.segments(directory)) {
+                if (segment < snapshot.getLogSegment()) {
+                    TransactionLog.segmentFile(directory, segment).delete();
+                }
+            }
+
+            LOG.info("Snapshot of {} transactions written in {} ms",
+                    snapshot.size(), System.currentTimeMillis() - started);
+        } catch (IOException e) {
+            LOG.error("Snapshot failed", e);
+        }
+    }
+
+    private void flush() {
+        try {
+            transactionLog.flush();
+        } catch (IOException e) {
+            LOG.error("Flushing the transaction log failed", e);
+        }
+    }
+
+    /**
+     * Loads the snapshot and replays the log segments following it into the repository.
+     * Without any log records to replay, the snapshot is loaded in the background.
+     * @return the number of the log segment to continue with
+     * @throws IOException
+     */
+    private long recover() throws IOException {
+        long started = System.currentTimeMillis();
+        MappedTransactionSnapshot snapshot = MappedTransactionSnapshot.open(directory);
+        long snapshotSegment = snapshot != null ? snapshot.getLogSegment() : 0;
+        long logSegment = snapshotSegment;
+        boolean logTail = false;
+
+        for (long segment : TransactionLog.segments(directory)) {
+            if (segment >= snapshotSegment) {
+                logTail |= TransactionLog.segmentFile(directory, segment).length() > 0;
+                logSegment = segment + 1;
+            }
+        }
+
+        if (snapshot != null && !logTail) {
+            repository.loadSnapshotInBackground(snapshot);
+            LOG.info("Loading {} transactions from the snapshot in the background", snapshot.size());
+            return logSegment;
+        }
+
+        int loaded = 0;
+        if (snapshot != null) {
+            try {
+                repository.loadSnapshot(snapshot);
+                loaded = snapshot.size();
+            } finally {
+                snapshot.close();
+            }
+        }
+
+        int replayed = 0;
+        for (long segment : TransactionLog.segments(directory)) {
+            if (segment < snapshotSegment) {
+                continue;
+            }
+
+            // the log is replayed in order, updates may depend on the ones before them
+            replayed += TransactionLog.replay(TransactionLog.segmentFile(directory, segment), transaction -> {
+                try {
+                    repository.addTransaction(transaction);
+                } catch (TransactionInvalidException e) {
+                    LOG.warn("Skipping invalid transaction {} in the log", transaction.getTransactionId());
+                }
+            });
+        }
+
+        LOG.info("Recovered {} transactions from the snapshot and {} from the log in {} ms",
+                loaded, replayed, System.currentTimeMillis() - started);
+
+        return logSegment;
+    }
+}
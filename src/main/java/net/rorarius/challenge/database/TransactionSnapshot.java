@@ -0,0 +1,190 @@
+package net.rorarius.challenge.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar binary snapshot of all Transactions of the repository, read back by MappedTransactionSnapshot.
+ *
+ * Every attribute is stored as its own column of fixed width values and the types are dictionary
+ * encoded, so the file can be memory-mapped and read without parsing. The transactions are stored
+ * parents first and with their subtree sums, so loading needs neither ordering nor sum propagation.
+ * A sorted copy of the IDs allows binary searching the snapshot before it is loaded.
+ *
+ * The snapshot remembers the log segment that was started when it was taken, so recovery loads the
+ * snapshot and replays that segment and all following ones. A snapshot is written to a temporary
+ * file, forced and then renamed, so there is always one complete snapshot on disk.
+ *
+ * Layout (little endian): int magic, int version, long logSegment, int count, int typeCount,
+ * per type int length and UTF-8 bytes, padding to 8 bytes, then the columns
+ * long[] transactionIds, double[] amounts, long[] parentIds, double[] sums, int[] typeIds,
+ * byte[] hasParent, padding to 8 bytes, long[] sortedIds, int[] sortedPositions
+ */
+public class TransactionSnapshot
+{
+    public static final String FILE_NAME = "snapshot.bin";
+
+    static final int MAGIC = 0x54585353;
+    static final int VERSION = 2;
+
+    final long logSegment;
+    final int count;
+    final long[] transactionIds;
+    final double[] amounts;
+    final long[] parentIds;
+    final boolean[] hasParent;
+    final double[] sums;
+    final int[] typeIds;
+    final List<String> types;
+
+    TransactionSnapshot(long logSegment, int count, long[] transactionIds, double[] amounts, long[] parentIds,
+                        boolean[] hasParent, double[] sums, int[] typeIds, List<String> types) {
+        this.logSegment = logSegment;
+        this.count = count;
+        this.transactionIds = transactionIds;
+        this.amounts = amounts;
+        this.parentIds = parentIds;
+        this.hasParent = hasParent;
+        this.sums = sums;
+        this.typeIds = typeIds;
+        this.types = types;
+    }
+
+    /**
+     * The first log segment that is not contained in the snapshot
+     * @return long
+     */
+    public long getLogSegment() {
+        return logSegment;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Writes the snapshot into a directory, replacing the previous one
+     * @param directory
+     * @throws IOException
+     */
+    public void write(File directory) throws IOException {
+        File temporary = new File(directory, FILE_NAME + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(channel);
+
+            long[] sortedIds = Arrays.copyOf(transactionIds, count);
+            int[] sortedPositions = sortPositions(sortedIds);
+
+            ByteBuffer buffer = newBuffer();
+            for (int i = 0; i < count; i++) {
+                buffer = put(channel, buffer, 8).putLong(transactionIds[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                buffer = put(channel, buffer, 8).putDouble(amounts[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                buffer = put(channel, buffer, 8).putLong(parentIds[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                buffer = put(channel, buffer, 8).putDouble(sums[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                buffer = put(channel, buffer, 4).putInt(typeIds[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                buffer = put(channel, buffer, 1).put((byte) (hasParent[i] ? 1 : 0));
+            }
+            buffer = pad(channel, buffer, 4L * count + count);
+            for (int i = 0; i < count; i++) {
+                buffer = put(channel, buffer, 8).putLong(sortedIds[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                buffer = put(channel, buffer, 4).putInt(sortedPositions[i]);
+            }
+
+            drain(channel, buffer);
+            channel.force(true);
+        }
+
+        Files.move(temporary.toPath(), new File(directory, FILE_NAME).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeHeader(FileChannel channel) throws IOException {
+        int headerSize = 4 + 4 + 8 + 4 + 4;
+        byte[][] encodedTypes = new byte[types.size()][];
+
+        for (int i = 0; i < encodedTypes.length; i++) {
+            encodedTypes[i] = types.get(i).getBytes(StandardCharsets.UTF_8);
+            headerSize += 4 + encodedTypes[i].length;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(align(headerSize)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(logSegment).putInt(count).putInt(encodedTypes.length);
+        for (byte[] type : encodedTypes) {
+            header.putInt(type.length).put(type);
+        }
+
+        header.position(header.capacity());
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    /**
+     * Sorts the IDs in place and returns the original position of every sorted ID. The IDs are
+     * unique, so the positions are found by binary search in the sorted primitive array.
+     */
+    private int[] sortPositions(long[] sortedIds) {
+        Arrays.sort(sortedIds);
+
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[Arrays.binarySearch(sortedIds, transactionIds[i])] = i;
+        }
+
+        return positions;
+    }
+
+    static int align(long size) {
+        return (int) ((size + 7) & ~7L);
+    }
+
+    private static ByteBuffer newBuffer() {
+        return ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer put(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain(channel, buffer);
+        }
+        return buffer;
+    }
+
+    private static ByteBuffer pad(FileChannel channel, ByteBuffer buffer, long written) throws IOException {
+        for (long i = written; i < align(written); i++) {
+            put(channel, buffer, 1).put((byte) 0);
+        }
+        return buffer;
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,55 @@
+package net.rorarius.challenge.database;
+
+import net.rorarius.challenge.model.Transaction;
+
+import java.util.function.Consumer;
+
+/**
+ * Storage of the Transactions of the repository by transaction-ID.
+ *
+ * Implementations must allow lookups concurrent to writes. A Transaction returned by get must not
+ * be modified, it may be the stored instance itself or a copy made for the caller.
+ */
+public interface TransactionStore
+{
+    enum Backend
+    {
+        // Transaction objects in a LongIndex on the heap
+        HEAP,
+        // fixed-width records in direct memory, Transactions are created on every lookup
+        OFF_HEAP;
+
+        /**
+         * @param types the dictionary of the repository, shared by stores that encode types
+         * @return TransactionStore
+         */
+        public TransactionStore create(TypeDictionary types) {
+            return this == OFF_HEAP ? new OffHeapTransactionStore(types) : new HeapTransactionStore();
+        }
+    }
+
+    /**
+     * Returns the Transaction stored for an ID or null
+     * @param transactionId
+     * @return Transaction
+     */
+    Transaction get(long transactionId);
+
+    boolean containsKey(long transactionId);
+
+    /**
+     * Stores a Transaction under its transaction-ID, replacing the previous one
+     * @param transaction
+     */
+    void put(Transaction transaction);
+
+    int size();
+
+    /**
+     * Passes every stored Transaction to a consumer
+     * @param consumer
+     */
+    void forEachValue(Consumer<? super Transaction> consumer);
+
+    void clear();
+}
@@ -0,0 +1,83 @@
+package net.rorarius.challenge.database;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps transaction types to small ints, in the order the types are first seen.
+ *
+ * An ID never changes once it is assigned and the dictionary never shrinks, so IDs may be kept
+ * anywhere without invalidation. Every type is held by a single canonical String, which transactions
+ * can share instead of keeping their own copies. Lookups do not lock, new types are added under the
+ * monitor of the dictionary.
+ */
+public class TypeDictionary
+{
+    public static final int NO_TYPE = -1;
+
+    private final ConcurrentMap<String, Integer> typeIds = new ConcurrentHashMap<>();
+    private volatile String[] types = new String[16];
+    private int typeCount;
+
+    /**
+     * Returns the ID of a type and adds it if it is new
+     * @param type
+     * @return the ID or NO_TYPE for null
+     */
+    public int idOf(String type) {
+        if (type == null) {
+            return NO_TYPE;
+        }
+
+        Integer typeId = typeIds.get(type);
+        if (typeId != null) {
+            return typeId;
+        }
+
+        synchronized (this) {
+            typeId = typeIds.get(type);
+
+            if (typeId == null) {
+                String[] current = types;
+                if (typeCount == current.length) {
+                    current = Arrays.copyOf(current, typeCount * 2);
+                }
+                current[typeCount] = type;
+                types = current;
+                typeId = typeCount++;
+                typeIds.put(type, typeId);
+            }
+
+            return typeId;
+        }
+    }
+
+    /**
+     * Returns the ID of a type without adding it
+     * @param type
+     * @return the ID or NO_TYPE if the type was never added
+     */
+    public int lookup(String type) {
+        if (type == null) {
+            return NO_TYPE;
+        }
+
+        Integer typeId = typeIds.get(type);
+        return typeId != null ? typeId : NO_TYPE;
+    }
+
+    /**
+     * Returns the canonical String of a type ID
+     * @param typeId
+     * @return the type or null if the ID is unknown
+     */
+    public String typeOf(int typeId) {
+        String[] current = types;
+        return typeId >= 0 && typeId < current.length ? current[typeId] : null;
+    }
+
+    public int size() {
+        return typeIds.size();
+    }
+}
@@ -0,0 +1,100 @@
+package net.rorarius.challenge.database;
+
+/**
+ * Aggregates of the amounts of one transaction type, updated on every insert and update.
+ *
+ * Count, sum, min and max are kept as plain values, so every update is O(1) and allocates nothing.
+ * Removing the current minimum or maximum cannot tell the next one, so the extremes are marked
+ * inexact and recomputed from the transactions of the type on the next read, see setExtremes.
+ * Until then they are still bounds of all amounts of the type. Not thread safe, the repository
+ * synchronizes on the instance.
+ */
+public class TypeStats
+{
+    private int count;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private boolean exactExtremes = true;
+
+    public void add(double amount) {
+        count++;
+        sum += amount;
+        min = Math.min(min, amount);
+        max = Math.max(max, amount);
+    }
+
+    /**
+     * Removes an amount that was added before
+     * @param amount
+     * @throws IllegalStateException if the amount cannot be part of the aggregates
+     */
+    public void remove(double amount) {
+        if (count == 0 || amount < min || amount > max) {
+            throw new IllegalStateException("amount " + amount + " was never added to the type");
+        }
+
+        count--;
+        sum -= amount;
+
+        if (count == 0) {
+            // no rounding errors left behind for the next transactions
+            sum = 0;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+            exactExtremes = true;
+        } else if (amount == min || amount == max) {
+            exactExtremes = false;
+        }
+    }
+
+    /**
+     * Replaces the amount of a transaction that keeps its type, count and sum only change by the difference
+     * @param previousAmount
+     * @param amount
+     */
+    public void replace(double previousAmount, double amount) {
+        remove(previousAmount);
+        add(amount);
+    }
+
+    /**
+     * @return false if min and max have to be recomputed since an extreme was removed
+     */
+    public boolean hasExactExtremes() {
+        return exactExtremes;
+    }
+
+    /**
+     * Sets the extremes recomputed from all amounts of the type
+     * @param min
+     * @param max
+     */
+    public void setExtremes(double min, double max) {
+        this.min = min;
+        this.max = max;
+        exactExtremes = true;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @return the smallest amount or null if the type has no transactions
+     */
+    public Double getMin() {
+        return count == 0 ? null : min;
+    }
+
+    /**
+     * @return the largest amount or null if the type has no transactions
+     */
+    public Double getMax() {
+        return count == 0 ? null : max;
+    }
+}
@@ -0,0 +1,9 @@
+package net.rorarius.challenge.enums;
+
+/**
+ * Outcome of storing a transaction in the repository
+ */
+public enum UpsertResult
+{
+    CREATED, UPDATED, REJECTED
+}
@@ -0,0 +1,14 @@
+package net.rorarius.challenge.exceptions;
+
+public class SubtreeTooLargeException extends Exception
+{
+
+    public SubtreeTooLargeException()
+    {
+    }
+
+    public SubtreeTooLargeException(String message)
+    {
+        super(message);
+    }
+}
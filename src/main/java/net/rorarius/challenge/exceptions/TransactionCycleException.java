@@ -0,0 +1,14 @@
+package net.rorarius.challenge.exceptions;
+
+public class TransactionCycleException extends Exception
+{
+
+    public TransactionCycleException()
+    {
+    }
+
+    public TransactionCycleException(String message)
+    {
+        super(message);
+    }
+}
@@ -0,0 +1,22 @@
+package net.rorarius.challenge.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import java.util.List;
+
+@Configuration
+public class JsonConfiguration extends WebMvcConfigurerAdapter
+{
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        // ahead of the Jackson converter, which still handles all other types
+        converters.add(0, new TransactionMessageConverter(objectMapper.getFactory()));
+    }
+}
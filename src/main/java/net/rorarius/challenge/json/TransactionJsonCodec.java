@@ -0,0 +1,146 @@
+package net.rorarius.challenge.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import net.rorarius.challenge.model.Transaction;
+import net.rorarius.challenge.responses.StatusResponse;
+import net.rorarius.challenge.responses.SumResponse;
+
+import java.io.IOException;
+
+/**
+ * Hand-written streaming serialization of the small bodies of the transaction service.
+ *
+ * Produces and accepts the same JSON as the Jackson databinding of the annotated classes, but
+ * without introspection and without boxing the values of a Transaction. Unknown fields are skipped.
+ */
+public final class TransactionJsonCodec
+{
+    private static final SerializedString AMOUNT = new SerializedString("amount");
+    private static final SerializedString TYPE = new SerializedString("type");
+    private static final SerializedString PARENT_ID = new SerializedString("parent_id");
+    private static final SerializedString STATUS = new SerializedString("status");
+    private static final SerializedString SUM = new SerializedString("sum");
+
+    private TransactionJsonCodec() {
+    }
+
+    public static void writeTransaction(JsonGenerator generator, Transaction transaction) throws IOException {
+        generator.writeStartObject();
+
+        generator.writeFieldName(AMOUNT);
+        if (transaction.hasAmount()) {
+            generator.writeNumber(transaction.amountValue());
+        } else {
+            generator.writeNull();
+        }
+
+        generator.writeFieldName(TYPE);
+        generator.writeString(transaction.getType());
+
+        generator.writeFieldName(PARENT_ID);
+        if (transaction.hasParentId()) {
+            generator.writeNumber(transaction.parentIdValue());
+        } else {
+            generator.writeNull();
+        }
+
+        generator.writeEndObject();
+    }
+
+    public static void writeStatusResponse(JsonGenerator generator, StatusResponse response) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(STATUS);
+        generator.writeString(response.getStatus() != null ? response.getStatus().name() : null);
+        generator.writeEndObject();
+    }
+
+    public static void writeSumResponse(JsonGenerator generator, SumResponse response) throws IOException {
+        generator.writeStartObject();
+        generator.writeFieldName(SUM);
+        if (response.getSum() != null) {
+            generator.writeNumber(response.getSum());
+        } else {
+            generator.writeNull();
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Reads a transaction object, the transactionId is not part of the body
+     * @param parser positioned before or at the START_OBJECT token
+     * @return Transaction
+     * @throws IOException if the input is not a valid transaction object
+     */
+    public static Transaction readTransaction(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken() != null ? parser.getCurrentToken() : parser.nextToken();
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException("Expected a transaction object", parser.getCurrentLocation());
+        }
+
+        Transaction transaction = new Transaction();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            token = parser.nextToken();
+
+            switch (field) {
+                case "amount":
+                    transaction.setAmount(token == JsonToken.VALUE_NULL ? null : readDouble(parser, token));
+                    break;
+                case "type":
+                    transaction.setType(token == JsonToken.VALUE_NULL ? null : readString(parser, token));
+                    break;
+                case "parent_id":
+                    transaction.setParentId(token == JsonToken.VALUE_NULL ? null : readLong(parser, token));
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        if (parser.getCurrentToken() != JsonToken.END_OBJECT) {
+            throw new JsonParseException("Unexpected end of the transaction object", parser.getCurrentLocation());
+        }
+
+        return transaction;
+    }
+
+    private static double readDouble(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getDoubleValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return Double.parseDouble(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                throw new JsonParseException("Not a number: " + parser.getText(), parser.getCurrentLocation(), e);
+            }
+        }
+        throw new JsonParseException("Expected a number but got " + token, parser.getCurrentLocation());
+    }
+
+    private static long readLong(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+            return parser.getLongValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return Long.parseLong(parser.getText().trim());
+            } catch (NumberFormatException e) {
+                throw new JsonParseException("Not an integer: " + parser.getText(), parser.getCurrentLocation(), e);
+            }
+        }
+        throw new JsonParseException("Expected an integer but got " + token, parser.getCurrentLocation());
+    }
+
+    private static String readString(JsonParser parser, JsonToken token) throws IOException {
+        if (token.isScalarValue()) {
+            return parser.getText();
+        }
+        throw new JsonParseException("Expected a string but got " + token, parser.getCurrentLocation());
+    }
+}
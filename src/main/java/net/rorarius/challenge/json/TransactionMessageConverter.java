@@ -0,0 +1,66 @@
+package net.rorarius.challenge.json;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import net.rorarius.challenge.model.Transaction;
+import net.rorarius.challenge.responses.StatusResponse;
+import net.rorarius.challenge.responses.SumResponse;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Reads and writes the bodies of the transaction service with the TransactionJsonCodec instead of
+ * the Jackson databinding. All other types are left to the default converters.
+ */
+public class TransactionMessageConverter extends AbstractHttpMessageConverter<Object>
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final JsonFactory jsonFactory;
+
+    public TransactionMessageConverter(JsonFactory jsonFactory) {
+        super(new MediaType("application", "json", UTF8), new MediaType("application", "*+json", UTF8));
+        this.jsonFactory = jsonFactory;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == Transaction.class || clazz == StatusResponse.class || clazz == SumResponse.class;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return clazz == Transaction.class && canRead(mediaType);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(inputMessage.getBody())) {
+            return TransactionJsonCodec.readTransaction(parser);
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("Could not read transaction: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object object, HttpOutputMessage outputMessage) throws IOException {
+        try (JsonGenerator generator = jsonFactory.createGenerator(outputMessage.getBody(), JsonEncoding.UTF8)) {
+            if (object instanceof Transaction) {
+                TransactionJsonCodec.writeTransaction(generator, (Transaction) object);
+            } else if (object instanceof StatusResponse) {
+                TransactionJsonCodec.writeStatusResponse(generator, (StatusResponse) object);
+            } else {
+                TransactionJsonCodec.writeSumResponse(generator, (SumResponse) object);
+            }
+        }
+    }
+}
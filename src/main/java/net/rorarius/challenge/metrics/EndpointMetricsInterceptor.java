@@ -0,0 +1,42 @@
+package net.rorarius.challenge.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Records the latency of every request handled by a controller method, named after the method.
+ * The counts per status code are recorded by the actuator itself (counter.status.*).
+ * Asynchronous requests are measured from their first dispatch to the completion of the last one.
+ */
+@Component
+public class EndpointMetricsInterceptor extends HandlerInterceptorAdapter
+{
+    private static final String START_ATTRIBUTE = EndpointMetricsInterceptor.class.getName() + ".start";
+
+    @Autowired
+    TransactionMetrics metrics;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(START_ATTRIBUTE) == null) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+
+        if (start != null && handler instanceof HandlerMethod) {
+            long milliseconds = (System.nanoTime() - (Long) start) / 1000000;
+            metrics.recordLatency(((HandlerMethod) handler).getMethod().getName(), milliseconds);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package net.rorarius.challenge.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+@Configuration
+public class MetricsConfiguration extends WebMvcConfigurerAdapter
+{
+    @Autowired
+    EndpointMetricsInterceptor endpointMetricsInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(endpointMetricsInterceptor).addPathPatterns("/transactionservice/**");
+    }
+}
@@ -0,0 +1,48 @@
+package net.rorarius.challenge.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.boot.actuate.metrics.GaugeService;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the metrics of the transactionservice. The values end up in the Dropwizard MetricRegistry,
+ * the "timer." and "histogram." prefixes make it keep distributions instead of the last value.
+ * All metrics are listed by the actuator /metrics endpoint.
+ */
+@Component
+public class TransactionMetrics
+{
+    private static final String PREFIX = "transactionservice.";
+
+    @Autowired
+    CounterService counterService;
+
+    @Autowired
+    GaugeService gaugeService;
+
+    /**
+     * Records the duration of a request to an endpoint
+     * @param endpoint the name of the handler method
+     * @param milliseconds
+     */
+    public void recordLatency(String endpoint, long milliseconds) {
+        gaugeService.submit("timer." + PREFIX + endpoint, milliseconds);
+    }
+
+    /**
+     * Counts a rejected transaction
+     * @param reason the error code of the validator, parentMissing or cycle
+     */
+    public void countRejection(String reason) {
+        counterService.increment(PREFIX + "rejected." + reason);
+    }
+
+    /**
+     * Records the depth of a newly added transaction, 0 for a root
+     * @param depth
+     */
+    public void recordDepth(int depth) {
+        gaugeService.submit("histogram." + PREFIX + "tree.depth", depth);
+    }
+}
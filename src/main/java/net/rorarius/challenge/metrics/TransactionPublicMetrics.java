@@ -0,0 +1,75 @@
+package net.rorarius.challenge.metrics;
+
+import net.rorarius.challenge.async.ReadExecutors;
+import net.rorarius.challenge.async.ReadPool;
+import net.rorarius.challenge.database.DBRepository;
+import net.rorarius.challenge.database.SumCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Adds the sizes of the repository indexes, the counters of the sum cache, the load of the read
+ * pools and the fan-out distribution of the transaction tree to the /metrics endpoint. The values
+ * are computed when the endpoint is read, the fan-out visits every parent once.
+ */
+@Component
+public class TransactionPublicMetrics implements PublicMetrics
+{
+    private static final String PREFIX = "transactionservice.";
+
+    // upper bounds of the fan-out buckets, the last bucket takes everything above
+    private static final int[] FAN_OUT_BUCKETS = {1, 10, 100, 1000};
+
+    @Autowired
+    DBRepository repository;
+
+    @Autowired
+    ReadExecutors readExecutors;
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+
+        metrics.add(new Metric<>(PREFIX + "index.ids", repository.getTransactionCount()));
+        metrics.add(new Metric<>(PREFIX + "index.types", repository.getTypeCount()));
+        metrics.add(new Metric<>(PREFIX + "index.parents", repository.getParentCount()));
+
+        SumCache sumCache = repository.getSumCache();
+        metrics.add(new Metric<>(PREFIX + "cache.sum.size", sumCache.size()));
+        metrics.add(new Metric<>(PREFIX + "cache.sum.hits", sumCache.getHits()));
+        metrics.add(new Metric<>(PREFIX + "cache.sum.misses", sumCache.getMisses()));
+        metrics.add(new Metric<>(PREFIX + "cache.sum.evictions", sumCache.getEvictions()));
+
+        for (ReadPool pool : new ReadPool[] {readExecutors.getPointReads(), readExecutors.getAggregateReads()}) {
+            metrics.add(new Metric<>(PREFIX + "async." + pool.getName() + ".active", pool.getActiveCount()));
+            metrics.add(new Metric<>(PREFIX + "async." + pool.getName() + ".queued", pool.getQueueSize()));
+            metrics.add(new Metric<>(PREFIX + "async." + pool.getName() + ".rejected", pool.getRejected()));
+        }
+
+        long[] buckets = new long[FAN_OUT_BUCKETS.length + 1];
+        int[] max = new int[1];
+        repository.forEachFanOut(fanOut -> {
+            int bucket = 0;
+            while (bucket < FAN_OUT_BUCKETS.length && fanOut > FAN_OUT_BUCKETS[bucket]) {
+                bucket++;
+            }
+            buckets[bucket]++;
+            max[0] = Math.max(max[0], fanOut);
+        });
+
+        for (int i = 0; i < FAN_OUT_BUCKETS.length; i++) {
+            metrics.add(new Metric<>(PREFIX + "tree.fanout.le" + FAN_OUT_BUCKETS[i], buckets[i]));
+        }
+        metrics.add(new Metric<>(PREFIX + "tree.fanout.gt" + FAN_OUT_BUCKETS[FAN_OUT_BUCKETS.length - 1],
+                buckets[FAN_OUT_BUCKETS.length]));
+        metrics.add(new Metric<>(PREFIX + "tree.fanout.max", max[0]));
+
+        return metrics;
+    }
+}
@@ -0,0 +1,78 @@
+package net.rorarius.challenge.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A Transaction within a batch request, which carries its transaction_id in the body
+ */
+public class BatchTransaction
+{
+    @JsonProperty("transaction_id")
+    private Long transactionId;
+
+    @JsonProperty("amount")
+    private Double amount;
+
+    @JsonProperty("type")
+    private String type;
+
+    @JsonProperty("parent_id")
+    private Long parentId;
+
+    public BatchTransaction()
+    {
+    }
+
+    public BatchTransaction(Long transactionId, Double amount, String type, Long parentId)
+    {
+        this.transactionId = transactionId;
+        this.amount = amount;
+        this.type = type;
+        this.parentId = parentId;
+    }
+
+    public Long getTransactionId()
+    {
+        return transactionId;
+    }
+
+    public void setTransactionId(Long transactionId)
+    {
+        this.transactionId = transactionId;
+    }
+
+    public Double getAmount()
+    {
+        return amount;
+    }
+
+    public void setAmount(Double amount)
+    {
+        this.amount = amount;
+    }
+
+    public String getType()
+    {
+        return type;
+    }
+
+    public void setType(String type)
+    {
+        this.type = type;
+    }
+
+    public Long getParentId()
+    {
+        return parentId;
+    }
+
+    public void setParentId(Long parentId)
+    {
+        this.parentId = parentId;
+    }
+
+    public Transaction toTransaction()
+    {
+        return new Transaction(transactionId, amount, type, parentId);
+    }
+}
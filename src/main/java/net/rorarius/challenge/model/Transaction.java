@@ -11,16 +11,16 @@ public class Transaction
 {
     private static final long serialVersionUID = 1L;
 
-    private Long transactionId;
-
-    @JsonProperty("amount")
-    private Double amount;
-
-    @JsonProperty("type")
+    // The values are kept as primitives to keep stored transactions small,
+    // the has-flags tell if a value was set at all.
+    private long transactionId;
+    private double amount;
     private String type;
+    private long parentId;
 
-    @JsonProperty("parent_id")
-    private Long parentId;
+    private boolean hasTransactionId;
+    private boolean hasAmount;
+    private boolean hasParentId;
 
     public Transaction()
     {
@@ -28,65 +28,132 @@ public class Transaction
 
     public Transaction(Long transactionId, Double amount, String type, Long parentId)
     {
-        this.transactionId = transactionId;
-        this.amount = amount;
-        this.type = type;
-        this.parentId = parentId;
+        setTransactionId(transactionId);
+        setAmount(amount);
+        setType(type);
+        setParentId(parentId);
     }
 
     public Long getTransactionId()
     {
-        return transactionId;
+        return hasTransactionId ? transactionId : null;
     }
 
     public void setTransactionId(Long transactionId)
     {
-        this.transactionId = transactionId;
+        this.hasTransactionId = transactionId != null;
+        this.transactionId = hasTransactionId ? transactionId : 0L;
     }
 
+    @JsonProperty("amount")
     public Double getAmount()
     {
-        return amount;
+        return hasAmount ? amount : null;
     }
 
+    @JsonProperty("amount")
     public void setAmount(Double amount)
     {
-        this.amount = amount;
+        this.hasAmount = amount != null;
+        this.amount = hasAmount ? amount : 0D;
     }
 
+    @JsonProperty("type")
     public String getType()
     {
         return type;
     }
 
+    @JsonProperty("type")
     public void setType(String type)
     {
         this.type = type;
     }
 
+    @JsonProperty("parent_id")
     public Long getParentId()
     {
-        return parentId;
+        return hasParentId ? parentId : null;
     }
 
+    @JsonProperty("parent_id")
     public void setParentId(Long parentId)
     {
-        this.parentId = parentId;
+        this.hasParentId = parentId != null;
+        this.parentId = hasParentId ? parentId : 0L;
     }
 
+    /**
+     * Unboxed transactionId, only meaningful if a transactionId was set
+     * @return long
+     */
+    public long transactionIdValue()
+    {
+        return transactionId;
+    }
+
+    /**
+     * Unboxed amount, 0 if no amount was set
+     * @return double
+     */
+    public double amountValue()
+    {
+        return amount;
+    }
+
+    /**
+     * Unboxed parentId, only meaningful if hasParentId() is true
+     * @return long
+     */
+    public long parentIdValue()
+    {
+        return parentId;
+    }
+
+    public boolean hasTransactionId()
+    {
+        return hasTransactionId;
+    }
+
+    public boolean hasAmount()
+    {
+        return hasAmount;
+    }
+
+    public boolean hasParentId()
+    {
+        return hasParentId;
+    }
+
+    /**
+     * Transactions are identified by their transactionId only
+     * @return int
+     */
     @Override
     public int hashCode()
     {
-        return super.hashCode();
+        return hasTransactionId ? Long.hashCode(transactionId) : 0;
     }
 
+    /**
+     * Two transactions are equal if they have the same transactionId, regardless of their other
+     * values. A transaction without a transactionId is only equal to itself.
+     * @param obj
+     * @return boolean
+     */
     @Override
     public boolean equals(Object obj)
     {
-        if (((Transaction)obj).getTransactionId() == this.getTransactionId()) {
+        if (this == obj) {
             return true;
         }
 
-        return false;
+        if (!(obj instanceof Transaction)) {
+            return false;
+        }
+
+        Transaction other = (Transaction) obj;
+
+        return hasTransactionId && other.hasTransactionId && transactionId == other.transactionId;
     }
-}
\ No newline at end of file
+}
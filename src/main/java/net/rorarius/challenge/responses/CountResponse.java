@@ -0,0 +1,28 @@
+package net.rorarius.challenge.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class CountResponse
+{
+    @JsonProperty
+    Integer count;
+
+    public CountResponse()
+    {
+    }
+
+    public CountResponse(Integer count)
+    {
+        this.count = count;
+    }
+
+    public Integer getCount()
+    {
+        return count;
+    }
+
+    public void setCount(Integer count)
+    {
+        this.count = count;
+    }
+}
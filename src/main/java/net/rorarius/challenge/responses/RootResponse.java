@@ -0,0 +1,42 @@
+package net.rorarius.challenge.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class RootResponse
+{
+    @JsonProperty("root_id")
+    Long rootId;
+
+    @JsonProperty
+    Integer depth;
+
+    public RootResponse()
+    {
+    }
+
+    public RootResponse(Long rootId, Integer depth)
+    {
+        this.rootId = rootId;
+        this.depth = depth;
+    }
+
+    public Long getRootId()
+    {
+        return rootId;
+    }
+
+    public void setRootId(Long rootId)
+    {
+        this.rootId = rootId;
+    }
+
+    public Integer getDepth()
+    {
+        return depth;
+    }
+
+    public void setDepth(Integer depth)
+    {
+        this.depth = depth;
+    }
+}
@@ -0,0 +1,70 @@
+package net.rorarius.challenge.responses;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class StatsResponse
+{
+    @JsonProperty
+    Integer count;
+
+    @JsonProperty
+    Double sum;
+
+    @JsonProperty
+    Double min;
+
+    @JsonProperty
+    Double max;
+
+    public StatsResponse()
+    {
+    }
+
+    public StatsResponse(Integer count, Double sum, Double min, Double max)
+    {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+
+    public Integer getCount()
+    {
+        return count;
+    }
+
+    public void setCount(Integer count)
+    {
+        this.count = count;
+    }
+
+    public Double getSum()
+    {
+        return sum;
+    }
+
+    public void setSum(Double sum)
+    {
+        this.sum = sum;
+    }
+
+    public Double getMin()
+    {
+        return min;
+    }
+
+    public void setMin(Double min)
+    {
+        this.min = min;
+    }
+
+    public Double getMax()
+    {
+        return max;
+    }
+
+    public void setMax(Double max)
+    {
+        this.max = max;
+    }
+}
@@ -17,6 +17,11 @@ public class StatusResponse
         this.status = status;
     }
 
+    public StatusCode getStatus()
+    {
+        return status;
+    }
+
     @Override
     public boolean equals(Object o)
     {
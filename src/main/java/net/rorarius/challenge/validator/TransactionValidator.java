@@ -25,11 +25,11 @@ public class TransactionValidator implements Validator
     {
         Transaction transaction = (Transaction) o;
 
-        if (transaction.getTransactionId() == null) {
+        if (!transaction.hasTransactionId()) {
             errors.reject("transactionId", "transactionId is mandatory");
         }
         
-        if (transaction.getAmount() == null) {
+        if (!transaction.hasAmount()) {
             errors.reject("amount", "amount is mandatory");
         }
 
@@ -37,9 +37,28 @@ public class TransactionValidator implements Validator
             errors.reject("type", "type is mandatory");
         }
 
-        if (transaction.getParentId() != null &&
-                transaction.getParentId() == transaction.getTransactionId()) {
-            errors.reject("transactionId", "transactionId and parentId must differ");
+        if (isOwnParent(transaction)) {
+            errors.reject("parentId", "transactionId and parentId must differ");
         }
     }
+
+    /**
+     * Checks the same rules as validate without creating any objects, so a valid transaction
+     * does not need an Errors instance at all
+     * @param transaction
+     * @return true if validate would not report an error
+     */
+    public boolean isValid(Transaction transaction)
+    {
+        return transaction.hasTransactionId()
+                && transaction.hasAmount()
+                && transaction.getType() != null
+                && !isOwnParent(transaction);
+    }
+
+    private boolean isOwnParent(Transaction transaction)
+    {
+        return transaction.hasParentId() && transaction.hasTransactionId()
+                && transaction.parentIdValue() == transaction.transactionIdValue();
+    }
 }
@@ -0,0 +1,75 @@
+package net.rorarius.challenge.async;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+
+public class ReadPoolTest
+{
+    private final ReadPool pool = new ReadPool("test", 1, 1);
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    private BlockingQueue<Object> submit(DeferredResult<?> result, HttpServletResponse response) {
+        BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+        ((ReadResult<?>) result).submit(response);
+        result.setResultHandler(value -> results.add(value == null ? "null" : value));
+        return results;
+    }
+
+    @Test
+    public void testReadsOnPool() throws Exception {
+        BlockingQueue<Object> results = submit(pool.read(() -> Thread.currentThread().getName()),
+                new MockHttpServletResponse());
+
+        assertThat((String) results.poll(10, TimeUnit.SECONDS), startsWith("test-read-"));
+    }
+
+    @Test
+    public void testRejectsWhenQueueIsFull() throws Exception {
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        BlockingQueue<Object> running = submit(pool.read(() -> {
+            blocked.countDown();
+            return release.await(10, TimeUnit.SECONDS);
+        }), new MockHttpServletResponse());
+        blocked.await(10, TimeUnit.SECONDS);
+        BlockingQueue<Object> queued = submit(pool.read(() -> true), new MockHttpServletResponse());
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        BlockingQueue<Object> rejected = submit(pool.read(() -> true), response);
+
+        assertThat(rejected.poll(), equalTo("null"));
+        assertThat(response.getStatus(), equalTo(HttpServletResponse.SC_SERVICE_UNAVAILABLE));
+        assertThat(pool.getRejected(), equalTo(1L));
+        assertThat(pool.getQueueSize(), equalTo(1));
+
+        release.countDown();
+        assertThat(running.poll(10, TimeUnit.SECONDS), equalTo(true));
+        assertThat(queued.poll(10, TimeUnit.SECONDS), equalTo(true));
+    }
+
+    @Test
+    public void testPassesExceptionsOn() throws Exception {
+        BlockingQueue<Object> results = submit(pool.read(() -> {
+            throw new IllegalStateException("failed");
+        }), new MockHttpServletResponse());
+
+        assertThat(((Exception) results.poll(10, TimeUnit.SECONDS)).getMessage(), equalTo("failed"));
+    }
+}
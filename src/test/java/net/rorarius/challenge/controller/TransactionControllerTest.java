@@ -3,30 +3,46 @@ package net.rorarius.challenge.controller;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import net.rorarius.challenge.Application;
+import com.codahale.metrics.MetricRegistry;
 import net.rorarius.challenge.database.DBRepository;
+import net.rorarius.challenge.database.TransactionLog;
 import net.rorarius.challenge.enums.StatusCode;
+import net.rorarius.challenge.metrics.TransactionPublicMetrics;
 import net.rorarius.challenge.model.Transaction;
+import net.rorarius.challenge.responses.CountResponse;
+import net.rorarius.challenge.responses.RootResponse;
+import net.rorarius.challenge.responses.StatsResponse;
 import net.rorarius.challenge.responses.StatusResponse;
 import net.rorarius.challenge.responses.SumResponse;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.Metric;
 import org.springframework.boot.test.SpringApplicationConfiguration;
 import org.springframework.boot.test.TestRestTemplate;
 import org.springframework.boot.test.WebIntegrationTest;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
@@ -40,6 +56,13 @@ public class TransactionControllerTest
     private final static String GET_BY_TYPE_URL="http://localhost:7777/transactionservice/types/{type}";
     private final static String GET_BY_ID_URL="http://localhost:7777/transactionservice/transaction/{id}";
     private final static String GET_SUM_URL="http://localhost:7777/transactionservice/sum/{id}";
+    private final static String GET_SUM_BY_TYPE_URL="http://localhost:7777/transactionservice/sum/{id}?type={type}";
+    private final static String GET_BY_TYPE_PAGE_URL="http://localhost:7777/transactionservice/types/{type}?after={after}&limit={limit}";
+    private final static String GET_COUNT_BY_TYPE_URL="http://localhost:7777/transactionservice/types/{type}/count";
+    private final static String GET_STATS_BY_TYPE_URL="http://localhost:7777/transactionservice/types/{type}/stats";
+    private final static String GET_ROOT_URL="http://localhost:7777/transactionservice/root/{id}";
+    private final static String GET_ANCESTORS_URL="http://localhost:7777/transactionservice/ancestors/{id}";
+    private final static String POST_BATCH_URL="http://localhost:7777/transactionservice/transactions";
 
     private final static StatusResponse OK_RESPONSE = new StatusResponse(StatusCode.OK);
     private final static StatusResponse ERROR_RESPONSE = new StatusResponse(StatusCode.ERROR);
@@ -48,6 +71,15 @@ public class TransactionControllerTest
     @Autowired
     DBRepository repository;
 
+    @Autowired
+    TransactionController controller;
+
+    @Autowired
+    MetricRegistry metricRegistry;
+
+    @Autowired
+    TransactionPublicMetrics publicMetrics;
+
     public static final ObjectMapper objMapper = new ObjectMapper();
 
     RestTemplate restTemplate = new TestRestTemplate();
@@ -71,6 +103,16 @@ public class TransactionControllerTest
         }
     }
 
+    private List<Map<String, Object>> addTransactions(String body, MediaType mediaType) throws IOException {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(mediaType);
+
+        HttpEntity<String> httpEntity = new HttpEntity<String>(body, requestHeaders);
+        ResponseEntity<String> responseEntity = restTemplate.exchange(POST_BATCH_URL, HttpMethod.POST, httpEntity, String.class);
+
+        return objMapper.readValue(responseEntity.getBody(), List.class);
+    }
+
     private List<Long> getTransactionListByType(String type) throws JsonProcessingException {
         HttpHeaders requestHeaders = new HttpHeaders();
         requestHeaders.setContentType(MediaType.APPLICATION_JSON);
@@ -80,6 +122,13 @@ public class TransactionControllerTest
         return transaction.getBody();
     }
 
+    private ResponseEntity<String> getTransactionIdsByTypeNdjson(String type) {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setAccept(Collections.singletonList(MediaType.valueOf("application/x-ndjson")));
+
+        return restTemplate.exchange(GET_BY_TYPE_URL, HttpMethod.GET, new HttpEntity<Void>(requestHeaders), String.class, type);
+    }
+
     private Transaction getTransactionById(Long transactionId) throws JsonProcessingException {
         HttpHeaders requestHeaders = new HttpHeaders();
         requestHeaders.setContentType(MediaType.APPLICATION_JSON);
@@ -287,4 +336,309 @@ public class TransactionControllerTest
         Transaction trx = getTransactionById(10L);
         assertThat(trx, nullValue());
     }
+
+    @Test
+    public void testPutWithFailedLogIsServerError() throws Exception {
+        File directory = Files.createTempDirectory("transactions").toFile();
+        TransactionLog log = new TransactionLog(directory, 0, TransactionLog.FsyncPolicy.ALWAYS);
+        // writes to the closed segment fail
+        log.close();
+        repository.setTransactionLog(log);
+
+        try {
+            HttpHeaders requestHeaders = new HttpHeaders();
+            requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+            HttpEntity<String> httpEntity = new HttpEntity<String>(
+                    objMapper.writeValueAsString(new Transaction(10L, 10D, "cars", null)), requestHeaders);
+
+            ResponseEntity<StatusResponse> response = restTemplate.exchange(PUT_URL, HttpMethod.PUT, httpEntity,
+                    StatusResponse.class, 10L);
+            assertThat(response.getStatusCode(), equalTo(HttpStatus.INTERNAL_SERVER_ERROR));
+            assertThat(response.getBody().getStatus(), equalTo(StatusCode.ERROR));
+        } finally {
+            repository.setTransactionLog(null);
+            TransactionLog.segmentFile(directory, 0).delete();
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void testAddTransactionBatch() throws Exception {
+        List<Map<String, Object>> results = addTransactions("["
+                + "{\"transaction_id\": 20, \"amount\": 10, \"type\": \"cars\", \"parent_id\": 10},"
+                + "{\"transaction_id\": 10, \"amount\": 10, \"type\": \"cars\"},"
+                + "{\"transaction_id\": 30, \"amount\": 10, \"type\": \"cars\", \"parent_id\": 40},"
+                + "{\"transaction_id\": 50, \"amount\": 10}"
+                + "]", MediaType.APPLICATION_JSON);
+
+        assertThat(results.size(), equalTo(4));
+        assertThat(results.get(0).get("transaction_id"), equalTo((Object) 20));
+        assertThat(results.get(0).get("status"), equalTo((Object) "OK"));
+        assertThat(results.get(1).get("status"), equalTo((Object) "OK"));
+        assertThat(results.get(2).get("status"), equalTo((Object) "ERROR"));
+        assertThat(results.get(3).get("status"), equalTo((Object) "ERROR"));
+
+        Double transactionSum = getTransactionSum(10L);
+        assertThat(transactionSum, equalTo(20D));
+    }
+
+    @Test
+    public void testAddTransactionBatchMalformed() throws Exception {
+        int batchChunkSize = controller.batchChunkSize;
+        controller.batchChunkSize = 2;
+
+        try {
+            HttpHeaders requestHeaders = new HttpHeaders();
+            requestHeaders.setContentType(MediaType.APPLICATION_JSON);
+            HttpEntity<String> httpEntity = new HttpEntity<String>("["
+                    + "{\"transaction_id\": 10, \"amount\": 10, \"type\": \"cars\"},"
+                    + "{\"transaction_id\": 20, \"amount\": 10, \"type\": \"cars\", \"parent_id\": 10},"
+                    + "{\"transaction_id\": 30, \"amount\": 10, \"type\": \"cars\"},"
+                    + "{\"transaction_id\": ", requestHeaders);
+            ResponseEntity<String> response = restTemplate.exchange(POST_BATCH_URL, HttpMethod.POST, httpEntity, String.class);
+            List<Map<String, Object>> results = objMapper.readValue(response.getBody(), List.class);
+
+            // the first chunk was applied and streamed before the error was found
+            assertThat(response.getStatusCode(), equalTo(HttpStatus.OK));
+            assertThat(results.size(), equalTo(4));
+            assertThat(results.get(1).get("status"), equalTo((Object) "OK"));
+            assertThat(results.get(2).get("transaction_id"), equalTo((Object) 30));
+            assertThat(results.get(2).get("status"), equalTo((Object) "ERROR"));
+            assertThat(results.get(3).get("error"), notNullValue());
+            assertThat(getTransactionSum(10L), equalTo(20D));
+            assertThat(getTransactionById(30L), nullValue());
+
+            response = restTemplate.exchange(POST_BATCH_URL, HttpMethod.POST,
+                    new HttpEntity<String>("[{\"transaction_id\": 40,", requestHeaders), String.class);
+            results = objMapper.readValue(response.getBody(), List.class);
+
+            assertThat(response.getStatusCode(), equalTo(HttpStatus.BAD_REQUEST));
+            assertThat(results.size(), equalTo(1));
+            assertThat(results.get(0).get("status"), equalTo((Object) "ERROR"));
+        } finally {
+            controller.batchChunkSize = batchChunkSize;
+        }
+    }
+
+    @Test
+    public void testAddTransactionBatchNdjson() throws Exception {
+        List<Map<String, Object>> results = addTransactions(
+                "{\"transaction_id\": 10, \"amount\": 10, \"type\": \"cars\"}\n"
+                + "{\"transaction_id\": 20, \"amount\": 10, \"type\": \"cars\", \"parent_id\": 10}\n",
+                MediaType.valueOf("application/x-ndjson"));
+
+        assertThat(results.size(), equalTo(2));
+        assertThat(results.get(0).get("status"), equalTo((Object) "OK"));
+        assertThat(results.get(1).get("status"), equalTo((Object) "OK"));
+
+        List<Long> transactionList = getTransactionListByType("cars");
+        assertThat(transactionList.size(), equalTo(2));
+    }
+
+    @Test
+    public void testTypeRequestNdjson() throws Exception {
+        addTransaction(new Transaction(10L, 10D, "cars", null));
+        addTransaction(new Transaction(20L, 10D, "cars", 10L));
+        addTransaction(new Transaction(1000L, 10D, "cars", null));
+
+        ResponseEntity<String> response = getTransactionIdsByTypeNdjson("cars");
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.OK));
+        assertThat(response.getBody(), equalTo("10\n20\n1000\n"));
+    }
+
+    @Test
+    public void testTypeRequestNdjsonNotExistingType() throws Exception {
+        ResponseEntity<String> response = getTransactionIdsByTypeNdjson("cars");
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.NOT_FOUND));
+        assertThat(response.getBody(), nullValue());
+    }
+
+    @Test
+    public void testTypeRequestPaginated() throws Exception {
+        for (long id = 10; id <= 50; id += 10) {
+            addTransaction(new Transaction(id, 10D, "cars", null));
+        }
+
+        ResponseEntity<List> firstPage = restTemplate.getForEntity(
+                "http://localhost:7777/transactionservice/types/{type}?limit={limit}", List.class, "cars", 2);
+        assertThat(firstPage.getBody(), equalTo((List) Arrays.asList(10, 20)));
+        assertThat(firstPage.getHeaders().getFirst(HttpHeaders.LINK), containsString("cursor="));
+
+        ResponseEntity<List> lastPage = restTemplate.getForEntity(GET_BY_TYPE_PAGE_URL, List.class, "cars", 30, 2);
+        assertThat(lastPage.getBody(), equalTo((List) Arrays.asList(40, 50)));
+        assertThat(lastPage.getHeaders().getFirst(HttpHeaders.LINK), nullValue());
+    }
+
+    @Test
+    public void testTypeRequestPaginatedLastIdChangesType() throws Exception {
+        for (long id = 10; id <= 50; id += 10) {
+            addTransaction(new Transaction(id, 10D, "cars", null));
+        }
+
+        ResponseEntity<List> firstPage = restTemplate.getForEntity(
+                "http://localhost:7777/transactionservice/types/{type}?limit={limit}", List.class, "cars", 2);
+        assertThat(firstPage.getBody(), equalTo((List) Arrays.asList(10, 20)));
+
+        addTransaction(new Transaction(20L, 10D, "boats", null));
+
+        String link = firstPage.getHeaders().getFirst(HttpHeaders.LINK);
+        URI next = URI.create(link.substring(link.indexOf('<') + 1, link.indexOf('>')));
+        ResponseEntity<List> secondPage = restTemplate.getForEntity(next, List.class);
+        assertThat(secondPage.getStatusCode(), equalTo(HttpStatus.OK));
+        assertThat(secondPage.getBody(), equalTo((List) Arrays.asList(30, 40)));
+    }
+
+    @Test
+    public void testTypeRequestPaginatedInvalidCursor() throws Exception {
+        addTransaction(new Transaction(10L, 10D, "cars", null));
+
+        ResponseEntity<List> page = restTemplate.getForEntity(GET_BY_TYPE_PAGE_URL, List.class, "cars", 99, 2);
+        assertThat(page.getStatusCode(), equalTo(HttpStatus.BAD_REQUEST));
+
+        ResponseEntity<List> invalidLimit = restTemplate.getForEntity(GET_BY_TYPE_PAGE_URL, List.class, "cars", 10, 0);
+        assertThat(invalidLimit.getStatusCode(), equalTo(HttpStatus.BAD_REQUEST));
+    }
+
+    @Test
+    public void testTypeCountRequest() throws Exception {
+        addTransaction(new Transaction(10L, 10D, "cars", null));
+        addTransaction(new Transaction(20L, 10D, "cars", 10L));
+        addTransaction(new Transaction(20L, 15D, "cars", 10L));
+
+        ResponseEntity<CountResponse> count = restTemplate.getForEntity(GET_COUNT_BY_TYPE_URL, CountResponse.class, "cars");
+        assertThat(count.getStatusCode(), equalTo(HttpStatus.OK));
+        assertThat(count.getBody().getCount(), equalTo(2));
+
+        ResponseEntity<CountResponse> notFound = restTemplate.getForEntity(GET_COUNT_BY_TYPE_URL, CountResponse.class, "boats");
+        assertThat(notFound.getStatusCode(), equalTo(HttpStatus.NOT_FOUND));
+        assertThat(notFound.getBody().getCount(), equalTo(0));
+    }
+
+    @Test
+    public void testTypeStatsRequest() throws Exception {
+        addTransaction(new Transaction(10L, 10D, "cars", null));
+        addTransaction(new Transaction(11L, 5D, "cars", 10L));
+        addTransaction(new Transaction(12L, 20D, "shopping", 10L));
+
+        ResponseEntity<StatsResponse> response = restTemplate.getForEntity(GET_STATS_BY_TYPE_URL, StatsResponse.class, "cars");
+
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.OK));
+        assertThat(response.getBody().getCount(), equalTo(2));
+        assertThat(response.getBody().getSum(), equalTo(15D));
+        assertThat(response.getBody().getMin(), equalTo(5D));
+        assertThat(response.getBody().getMax(), equalTo(10D));
+
+        response = restTemplate.getForEntity(GET_STATS_BY_TYPE_URL, StatsResponse.class, "unknown");
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.NOT_FOUND));
+        assertThat(response.getBody().getCount(), equalTo(0));
+    }
+
+    @Test
+    public void testSumByTypeRequest() throws Exception {
+        addTransaction(new Transaction(10L, 10D, "cars", null));
+        addTransaction(new Transaction(11L, 20D, "shopping", 10L));
+        addTransaction(new Transaction(12L, 30D, "cars", 11L));
+
+        ResponseEntity<SumResponse> response = restTemplate.getForEntity(GET_SUM_BY_TYPE_URL, SumResponse.class, 10L, "cars");
+
+        assertThat(response.getStatusCode(), equalTo(HttpStatus.OK));
+        assertThat(response.getBody().getSum(), equalTo(40D));
+        assertThat(restTemplate.getForEntity(GET_SUM_BY_TYPE_URL, SumResponse.class, 99L, "cars").getStatusCode(),
+                equalTo(HttpStatus.NOT_FOUND));
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        long putCount = metricRegistry.getTimers().containsKey("timer.transactionservice.putTransaction")
+                ? metricRegistry.timer("timer.transactionservice.putTransaction").getCount() : 0;
+        long parentMissing = metricRegistry.counter("counter.transactionservice.rejected.parentMissing").getCount();
+        long amountMissing = metricRegistry.counter("counter.transactionservice.rejected.amount").getCount();
+
+        addTransaction(new Transaction(10L, 10D, "cars", null));
+        addTransaction(new Transaction(11L, 10D, "cars", 10L));
+        addTransaction(new Transaction(12L, 10D, "cars", 99L));
+        addTransaction(new Transaction(13L, null, "cars", null));
+
+        // the interceptor records the timer after the response has been sent
+        long deadline = System.currentTimeMillis() + 1000;
+        while (metricRegistry.timer("timer.transactionservice.putTransaction").getCount() < putCount + 4
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(metricRegistry.timer("timer.transactionservice.putTransaction").getCount(), equalTo(putCount + 4));
+        assertThat(metricRegistry.counter("counter.transactionservice.rejected.parentMissing").getCount(), equalTo(parentMissing + 1));
+        assertThat(metricRegistry.counter("counter.transactionservice.rejected.amount").getCount(), equalTo(amountMissing + 1));
+        assertThat(metricRegistry.getHistograms().containsKey("histogram.transactionservice.tree.depth"), equalTo(true));
+
+        Map<String, Number> values = new HashMap<>();
+        for (Metric<?> metric : publicMetrics.metrics()) {
+            values.put(metric.getName(), metric.getValue());
+        }
+        assertThat(values.get("transactionservice.index.ids"), equalTo((Number) 2));
+        assertThat(values.get("transactionservice.index.types"), equalTo((Number) 1));
+        assertThat(values.get("transactionservice.index.parents"), equalTo((Number) 1));
+        assertThat(values.get("transactionservice.tree.fanout.le1"), equalTo((Number) 1L));
+        assertThat(values.get("transactionservice.async.point.rejected"), equalTo((Number) 0L));
+        assertThat(values.get("transactionservice.async.aggregate.rejected"), equalTo((Number) 0L));
+    }
+
+    @Test
+    public void testGetRootAndAncestors() throws Exception {
+        addTransaction(new Transaction(10L, 10D, "cars", null));
+        addTransaction(new Transaction(11L, 10D, "cars", 10L));
+        addTransaction(new Transaction(12L, 10D, "cars", 11L));
+
+        ResponseEntity<RootResponse> root = restTemplate.getForEntity(GET_ROOT_URL, RootResponse.class, 12L);
+        assertThat(root.getStatusCode(), equalTo(HttpStatus.OK));
+        assertThat(root.getBody().getRootId(), equalTo(10L));
+        assertThat(root.getBody().getDepth(), equalTo(2));
+
+        ResponseEntity<Long[]> ancestors = restTemplate.getForEntity(GET_ANCESTORS_URL, Long[].class, 12L);
+        assertThat(ancestors.getStatusCode(), equalTo(HttpStatus.OK));
+        assertThat(Arrays.asList(ancestors.getBody()), equalTo(Arrays.asList(11L, 10L)));
+
+        assertThat(restTemplate.getForEntity(GET_ROOT_URL, String.class, 99L).getStatusCode(), equalTo(HttpStatus.NOT_FOUND));
+        assertThat(restTemplate.getForEntity(GET_ANCESTORS_URL, String.class, 99L).getStatusCode(), equalTo(HttpStatus.NOT_FOUND));
+    }
+
+    private ResponseEntity<String> getIfNoneMatch(String url, String etag, Object... uriVariables) {
+        HttpHeaders requestHeaders = new HttpHeaders();
+        if (etag != null) {
+            requestHeaders.setIfNoneMatch(etag);
+        }
+
+        return restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<Void>(requestHeaders), String.class, uriVariables);
+    }
+
+    @Test
+    public void testConditionalRequests() throws Exception {
+        addTransaction(new Transaction(10L, 10D, "cars", null));
+        addTransaction(new Transaction(11L, 20D, "cars", 10L));
+
+        String transactionEtag = getIfNoneMatch(GET_BY_ID_URL, null, 10L).getHeaders().getETag();
+        String sumEtag = getIfNoneMatch(GET_SUM_URL, null, 10L).getHeaders().getETag();
+        String typeEtag = getIfNoneMatch(GET_BY_TYPE_URL, null, "cars").getHeaders().getETag();
+
+        assertThat(transactionEtag, notNullValue());
+        assertThat(getIfNoneMatch(GET_BY_ID_URL, transactionEtag, 10L).getStatusCode(), equalTo(HttpStatus.NOT_MODIFIED));
+        assertThat(getIfNoneMatch(GET_SUM_URL, sumEtag, 10L).getStatusCode(), equalTo(HttpStatus.NOT_MODIFIED));
+        assertThat(getIfNoneMatch(GET_BY_TYPE_URL, typeEtag, "cars").getStatusCode(), equalTo(HttpStatus.NOT_MODIFIED));
+
+        // a new child changes the subtree and the type, but not the parent itself
+        addTransaction(new Transaction(12L, 30D, "cars", 11L));
+
+        assertThat(getIfNoneMatch(GET_BY_ID_URL, transactionEtag, 10L).getStatusCode(), equalTo(HttpStatus.NOT_MODIFIED));
+
+        ResponseEntity<String> sum = getIfNoneMatch(GET_SUM_URL, sumEtag, 10L);
+        assertThat(sum.getStatusCode(), equalTo(HttpStatus.OK));
+        assertThat(objMapper.readValue(sum.getBody(), SumResponse.class).getSum(), equalTo(60D));
+
+        ResponseEntity<String> type = getIfNoneMatch(GET_BY_TYPE_URL, typeEtag, "cars");
+        assertThat(type.getStatusCode(), equalTo(HttpStatus.OK));
+        assertThat(type.getHeaders().getETag(), notNullValue());
+
+        addTransaction(new Transaction(10L, 15D, "cars", null));
+        assertThat(getIfNoneMatch(GET_BY_ID_URL, transactionEtag, 10L).getStatusCode(), equalTo(HttpStatus.OK));
+        assertThat(getIfNoneMatch(GET_BY_ID_URL, transactionEtag, 99L).getStatusCode(), equalTo(HttpStatus.NOT_FOUND));
+    }
 }
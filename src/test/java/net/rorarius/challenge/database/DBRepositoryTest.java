@@ -2,9 +2,13 @@ package net.rorarius.challenge.database;
 
 import net.rorarius.challenge.Application;
 import net.rorarius.challenge.database.DBRepository;
+import net.rorarius.challenge.enums.StatusCode;
+import net.rorarius.challenge.enums.UpsertResult;
+import net.rorarius.challenge.exceptions.SubtreeTooLargeException;
 import net.rorarius.challenge.exceptions.TransactionIdEmptyException;
 import net.rorarius.challenge.exceptions.TransactionInvalidException;
 import net.rorarius.challenge.model.Transaction;
+import net.rorarius.challenge.responses.StatsResponse;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -12,10 +16,23 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.SpringApplicationConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.closeTo;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @SpringApplicationConfiguration(classes = Application.class)
@@ -241,4 +258,488 @@ public class DBRepositoryTest
         assertThat(success, equalTo(true));
         assertThat(repository.getTransactionById(trx.getTransactionId()), equalTo(trx));
     }
+
+    @Test
+    public void testUpdateAmountUpdatesAncestorSums() throws TransactionIdEmptyException, TransactionInvalidException {
+        repository.addTransaction(new Transaction(1L, 10D, "test", null));
+        repository.addTransaction(new Transaction(2L, 10D, "test", 1L));
+        repository.addTransaction(new Transaction(3L, 10D, "test", 2L));
+
+        repository.addTransaction(new Transaction(3L, 5D, "test", 2L));
+        repository.addTransaction(new Transaction(2L, 20D, "test", 1L));
+
+        assertThat(repository.getTransactionSumRecursive(1L), equalTo(35D));
+        assertThat(repository.getTransactionSumRecursive(2L), equalTo(25D));
+        assertThat(repository.getTransactionSumRecursive(3L), equalTo(5D));
+    }
+
+    @Test
+    public void testChangeParentMovesSum() throws TransactionIdEmptyException, TransactionInvalidException {
+        repository.addTransaction(new Transaction(1L, 10D, "test", null));
+        repository.addTransaction(new Transaction(2L, 10D, "test", null));
+        repository.addTransaction(new Transaction(3L, 10D, "test", 1L));
+        repository.addTransaction(new Transaction(4L, 10D, "test", 3L));
+
+        repository.addTransaction(new Transaction(3L, 10D, "test", 2L));
+
+        assertThat(repository.getTransactionSumRecursive(1L), equalTo(10D));
+        assertThat(repository.getTransactionSumRecursive(2L), equalTo(30D));
+    }
+
+    @Test
+    public void testIncrementalSumsMatchRecomputeAfterFractionalUpdates() throws Exception {
+        // 100000 updates and moves of amounts up to 1000 with subtree sums up to 10^5: every update rounds
+        // by at most half an ulp of the sum (~7e-12), so even the worst case drift stays below 1e-6
+        final int transactions = 100;
+        final int updates = 100000;
+        final double tolerance = 1e-6;
+
+        Random random = new Random(42);
+        double[] amounts = new double[transactions];
+        long[] parents = new long[transactions];
+
+        repository.addTransaction(new Transaction(1L, 0.1D, "root", null));
+        repository.addTransaction(new Transaction(2L, 0.2D, "root", null));
+        repository.addTransaction(new Transaction(3L, 0.3D, "root", 2L));
+
+        for (int i = 0; i < transactions + updates; i++) {
+            int index = i < transactions ? i : random.nextInt(transactions);
+            amounts[index] = Math.round(random.nextDouble() * 2000000D - 1000000D) / 1000D;
+            parents[index] = 1L + random.nextInt(3);
+            repository.addTransaction(new Transaction(4L + index, amounts[index], "leaf", parents[index]));
+        }
+
+        // recompute the sums of 1, 2 and 3 exactly from the final amounts, 3 is a child of 2
+        BigDecimal[] expected = {new BigDecimal("0.1"), new BigDecimal("0.2"), new BigDecimal("0.3")};
+        for (int index = 0; index < transactions; index++) {
+            int parent = (int) parents[index] - 1;
+            expected[parent] = expected[parent].add(BigDecimal.valueOf(amounts[index]));
+        }
+        expected[1] = expected[1].add(expected[2]);
+
+        for (int i = 0; i < expected.length; i++) {
+            assertThat(repository.getTransactionSumRecursive(i + 1L), closeTo(expected[i].doubleValue(), tolerance));
+        }
+    }
+
+    @Test(expected=TransactionInvalidException.class)
+    public void testChangeParentToDescendant() throws TransactionIdEmptyException, TransactionInvalidException {
+        repository.addTransaction(new Transaction(1L, 10D, "test", null));
+        repository.addTransaction(new Transaction(2L, 10D, "test", 1L));
+
+        repository.addTransaction(new Transaction(1L, 10D, "test", 2L));
+    }
+
+    @Test
+    public void testRootAndAncestors() throws Exception {
+        repository.addTransaction(new Transaction(1L, 10D, "test", null));
+        repository.addTransaction(new Transaction(2L, 10D, "test", 1L));
+        repository.addTransaction(new Transaction(3L, 10D, "test", 2L));
+
+        assertThat(repository.getTransactionRoot(3L).getRootId(), equalTo(1L));
+        assertThat(repository.getTransactionRoot(3L).getDepth(), equalTo(2));
+        assertThat(repository.getTransactionRoot(1L).getRootId(), equalTo(1L));
+        assertThat(repository.getTransactionRoot(1L).getDepth(), equalTo(0));
+        assertThat(repository.getTransactionRoot(4L), nullValue());
+
+        assertThat(repository.getAncestorIds(3L), equalTo(new long[] {2L, 1L}));
+        assertThat(repository.getAncestorIds(1L), equalTo(new long[0]));
+        assertThat(repository.getAncestorIds(4L), nullValue());
+    }
+
+    @Test
+    public void testChangeParentMovesRootsOfSubtree() throws Exception {
+        repository.addTransaction(new Transaction(1L, 10D, "test", null));
+        repository.addTransaction(new Transaction(2L, 10D, "test", null));
+        repository.addTransaction(new Transaction(3L, 10D, "test", 2L));
+        repository.addTransaction(new Transaction(4L, 10D, "test", 3L));
+        repository.addTransaction(new Transaction(5L, 10D, "test", 4L));
+
+        repository.addTransaction(new Transaction(3L, 10D, "test", 1L));
+        repository.addTransaction(new Transaction(1L, 10D, "test", 2L));
+
+        assertThat(repository.getTransactionRoot(5L).getRootId(), equalTo(2L));
+        assertThat(repository.getTransactionRoot(5L).getDepth(), equalTo(4));
+        assertThat(repository.getAncestorIds(5L), equalTo(new long[] {4L, 3L, 1L, 2L}));
+        assertThat(repository.getTransactionSumRecursive(2L), equalTo(50D));
+
+        repository.addTransaction(new Transaction(4L, 10D, "test", null));
+
+        assertThat(repository.getTransactionRoot(5L).getRootId(), equalTo(4L));
+        assertThat(repository.getTransactionRoot(5L).getDepth(), equalTo(1));
+        assertThat(repository.getAncestorIds(3L), equalTo(new long[] {1L, 2L}));
+    }
+
+    @Test
+    public void testAddTransactionGetSumDeepHierarchy() throws TransactionIdEmptyException, TransactionInvalidException {
+        repository.addTransaction(new Transaction(0L, 1D, "test", null));
+
+        for (long i = 1; i < 10000; i++) {
+            repository.addTransaction(new Transaction(i, 1D, "test", i - 1));
+        }
+
+        assertThat(repository.getTransactionSumRecursive(0L), equalTo(10000D));
+        assertThat(repository.getTransactionSumRecursive(9000L), equalTo(1000D));
+    }
+
+    @Test
+    public void testSumByTypeDeepHierarchy() throws Exception {
+        repository.addTransaction(new Transaction(0L, 1D, "test", null));
+
+        for (long i = 1; i < 10000; i++) {
+            repository.addTransaction(new Transaction(i, 1D, i % 2 == 0 ? "test" : "other", i - 1));
+        }
+
+        assertThat(repository.getTransactionSumByType(0L, "test"), equalTo(5000D));
+        assertThat(repository.getTransactionSumByType(0L, "none"), equalTo(0D));
+        assertThat(repository.getTransactionSumByType(10000L, "test"), nullValue());
+    }
+
+    @Test
+    public void testSumByTypeFollowsMovedTransactions() throws Exception {
+        repository.addTransaction(new Transaction(1L, 10D, "test", null));
+        repository.addTransaction(new Transaction(2L, 10D, "test", null));
+        repository.addTransaction(new Transaction(3L, 10D, "test", 1L));
+        repository.addTransaction(new Transaction(3L, 10D, "test", 2L));
+
+        assertThat(repository.getTransactionSumByType(1L, "test"), equalTo(10D));
+        assertThat(repository.getTransactionSumByType(2L, "test"), equalTo(20D));
+    }
+
+    @Test
+    public void testSumByTypeWideHierarchyInParallel() throws Exception {
+        List<Transaction> transactions = new ArrayList<>();
+        transactions.add(new Transaction(0L, 1D, "test", null));
+
+        // 5000 children of the root with 10 children each, way above the parallel threshold
+        for (long i = 1; i <= 5000; i++) {
+            transactions.add(new Transaction(i, 1D, "test", 0L));
+            for (long j = 1; j <= 10; j++) {
+                transactions.add(new Transaction(1000000 + i * 100 + j, 1D, j % 2 == 0 ? "test" : "other", i));
+            }
+        }
+        repository.addTransactions(transactions);
+
+        int parallelThreshold = repository.parallelThreshold;
+        repository.parallelThreshold = 16;
+        try {
+            assertThat(repository.getTransactionSumByType(0L, "test"), equalTo(30001D));
+            assertThat(repository.getTransactionSumByType(0L, "other"), equalTo(25000D));
+        } finally {
+            repository.parallelThreshold = parallelThreshold;
+        }
+    }
+
+    @Test(expected = SubtreeTooLargeException.class)
+    public void testSumByTypeSubtreeTooLarge() throws Exception {
+        repository.addTransaction(new Transaction(1L, 10D, "test", null));
+        repository.addTransaction(new Transaction(2L, 10D, "test", 1L));
+        repository.addTransaction(new Transaction(3L, 10D, "test", 1L));
+
+        int maxSubtreeSize = repository.maxSubtreeSize;
+        repository.maxSubtreeSize = 2;
+        try {
+            repository.getTransactionSumByType(1L, "test");
+        } finally {
+            repository.maxSubtreeSize = maxSubtreeSize;
+        }
+    }
+
+    @Test
+    public void testTypeStatsFollowUpdates() throws Exception {
+        repository.addTransaction(new Transaction(1L, 10D, "cars", null));
+        repository.addTransaction(new Transaction(2L, 30D, "cars", null));
+        repository.addTransaction(new Transaction(3L, 20D, "cars", 1L));
+
+        StatsResponse stats = repository.getTransactionStatsByType("cars");
+        assertThat(stats.getCount(), equalTo(3));
+        assertThat(stats.getSum(), equalTo(60D));
+        assertThat(stats.getMin(), equalTo(10D));
+        assertThat(stats.getMax(), equalTo(30D));
+
+        // updating the minimum and moving the maximum to another type
+        repository.addTransaction(new Transaction(1L, 25D, "cars", null));
+        repository.addTransaction(new Transaction(2L, 30D, "shopping", null));
+
+        stats = repository.getTransactionStatsByType("cars");
+        assertThat(stats.getCount(), equalTo(2));
+        assertThat(stats.getSum(), equalTo(45D));
+        assertThat(stats.getMin(), equalTo(20D));
+        assertThat(stats.getMax(), equalTo(25D));
+        assertThat(repository.getTransactionStatsByType("shopping").getSum(), equalTo(30D));
+        assertThat(repository.getTransactionStatsByType("unknown"), nullValue());
+    }
+
+    @Test
+    public void testUpdateMovesBetweenTypesAndParents() throws Exception {
+        repository.addTransaction(new Transaction(1L, 10D, "cars", null));
+        repository.addTransaction(new Transaction(2L, 10D, "cars", null));
+        repository.addTransaction(new Transaction(3L, 10D, "shopping", 1L));
+
+        repository.addTransaction(new Transaction(3L, 10D, "cars", 2L));
+
+        assertThat(repository.transactionListContainsType("shopping"), equalTo(false));
+        assertThat(repository.getTransactionStatsByType("shopping"), nullValue());
+        assertThat(repository.getTransactionCountByType("cars"), equalTo(3));
+        assertThat(repository.getChildTransactions(1L), nullValue());
+        assertThat(repository.getChildTransactions(2L).size(), equalTo(1));
+        assertThat(repository.getParentCount(), equalTo(1));
+        assertThat(repository.getTransactionSumRecursive(1L), equalTo(10D));
+        assertThat(repository.getTransactionSumRecursive(2L), equalTo(20D));
+    }
+
+    @Test
+    public void testRewritesKeepIndexesBounded() throws Exception {
+        repository.addTransaction(new Transaction(1L, 10D, "root", null));
+        repository.addTransaction(new Transaction(2L, 10D, "root", null));
+
+        for (int i = 0; i < 1000; i++) {
+            repository.addTransaction(new Transaction(3L, (double) i, "type" + i, i % 2 == 0 ? 1L : 2L));
+        }
+
+        assertThat(repository.getTypeCount(), equalTo(2));
+        assertThat(repository.getParentCount(), equalTo(1));
+        assertThat(repository.getTransactionSumRecursive(2L), equalTo(1009D));
+        assertThat(repository.getTransactionSumRecursive(1L), equalTo(10D));
+    }
+
+    @Test
+    public void testConcurrentAddTransactions() throws Exception {
+        repository.addTransaction(new Transaction(0L, 0D, "root", null));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        try {
+            for (int thread = 0; thread < 8; thread++) {
+                final long offset = thread * 1000L;
+
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        for (long i = 1; i <= 1000; i++) {
+                            repository.addTransaction(new Transaction(offset + i, 2D, "test", 0L));
+                        }
+                        return true;
+                    }
+                }));
+            }
+
+            for (Future<Boolean> result : results) {
+                assertThat(result.get(), equalTo(true));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(repository.getTransactionListByType("test").size(), equalTo(8000));
+        assertThat(repository.getChildTransactions(0L).size(), equalTo(8000));
+        assertThat(repository.getTransactionSumRecursive(0L), equalTo(16000D));
+    }
+
+    @Test
+    public void testUpdateKeepsPositionInType() throws TransactionIdEmptyException, TransactionInvalidException {
+        Transaction trx = new Transaction(1L, 10D, "test", null);
+        Transaction trx2 = new Transaction(2L, 10D, "test", null);
+        repository.addTransaction(trx);
+        repository.addTransaction(trx2);
+
+        Transaction trx3 = new Transaction(1L, 20D, "test", null);
+        repository.addTransaction(trx3);
+
+        assertThat(repository.getTransactionListByType("test"), contains(trx3, trx2));
+    }
+
+    @Test
+    public void testAddTransactionsResolvesParents() throws TransactionIdEmptyException, TransactionInvalidException {
+        repository.addTransaction(new Transaction(1L, 10D, "test", null));
+
+        StatusCode[] results = repository.addTransactions(Arrays.asList(
+                new Transaction(4L, 10D, "test", 3L),
+                new Transaction(3L, 10D, "test", 2L),
+                new Transaction(2L, 10D, "test", 1L),
+                new Transaction(5L, null, "test", 1L),
+                new Transaction(6L, 10D, "test", 5L),
+                new Transaction(7L, 10D, "test", 8L),
+                new Transaction(8L, 10D, "test", 7L)));
+
+        assertThat(results, equalTo(new StatusCode[] {StatusCode.OK, StatusCode.OK, StatusCode.OK,
+                StatusCode.ERROR, StatusCode.ERROR, StatusCode.ERROR, StatusCode.ERROR}));
+        assertThat(repository.getTransactionSumRecursive(1L), equalTo(40D));
+        assertThat(repository.transactionExists(6L), equalTo(false));
+        assertThat(repository.transactionExists(7L), equalTo(false));
+    }
+
+    @Test
+    public void testAddTransactionsAppliesDuplicatesInBatchOrder() throws TransactionIdEmptyException, TransactionInvalidException {
+        Transaction root = new Transaction(3L, 30D, "test", null);
+
+        StatusCode[] results = repository.addTransactions(Arrays.asList(
+                new Transaction(3L, 10D, "test", 1L),
+                new Transaction(1L, 10D, "test", null),
+                root,
+                new Transaction(4L, 10D, "test", 5L),
+                new Transaction(4L, 20D, "test", null),
+                new Transaction(5L, 10D, "test", null)));
+
+        assertThat(results, equalTo(new StatusCode[] {StatusCode.OK, StatusCode.OK, StatusCode.OK,
+                StatusCode.OK, StatusCode.OK, StatusCode.OK}));
+        assertThat(repository.getTransactionById(3L), equalTo(root));
+        assertThat(repository.getTransactionSumRecursive(1L), equalTo(10D));
+        assertThat(repository.getTransactionById(4L).getParentId(), nullValue());
+        assertThat(repository.getTransactionSumRecursive(5L), equalTo(10D));
+    }
+
+    @Test
+    public void testBatchCarriesWaitingTransactionsAcrossChunks() throws TransactionIdEmptyException {
+        DBRepository.Batch batch = repository.startBatch();
+        batch.add(Arrays.asList(
+                new Transaction(2L, 10D, "test", 1L),
+                new Transaction(3L, 10D, "test", 9L)));
+
+        assertThat(repository.transactionExists(2L), equalTo(false));
+        assertThat(batch.awaitResolved(), equalTo(0));
+
+        batch.add(Arrays.asList(new Transaction(1L, 10D, "test", null)));
+        assertThat(batch.awaitResolved(), equalTo(1));
+        batch.finish();
+
+        assertThat(batch.awaitResolved(), equalTo(3));
+        assertThat(batch.result(0), equalTo(StatusCode.OK));
+        assertThat(batch.result(1), equalTo(StatusCode.ERROR));
+        assertThat(batch.result(2), equalTo(StatusCode.OK));
+        assertThat(repository.getTransactionSumRecursive(1L), equalTo(20D));
+        assertThat(repository.transactionExists(3L), equalTo(false));
+    }
+
+    @Test
+    public void testUpsertTransaction() throws TransactionIdEmptyException {
+        assertThat(repository.upsertTransaction(new Transaction(1L, 10D, "test", null)), equalTo(UpsertResult.CREATED));
+        assertThat(repository.upsertTransaction(new Transaction(2L, 10D, "test", 1L)), equalTo(UpsertResult.CREATED));
+        assertThat(repository.upsertTransaction(new Transaction(2L, 20D, "test", 1L)), equalTo(UpsertResult.UPDATED));
+        assertThat(repository.upsertTransaction(new Transaction(3L, null, "test", null)), equalTo(UpsertResult.REJECTED));
+        assertThat(repository.upsertTransaction(new Transaction(4L, 10D, "test", 99L)), equalTo(UpsertResult.REJECTED));
+        assertThat(repository.upsertTransaction(new Transaction(1L, 10D, "test", 2L)), equalTo(UpsertResult.REJECTED));
+
+        assertThat(repository.transactionExists(3L), equalTo(false));
+        assertThat(repository.transactionExists(4L), equalTo(false));
+        assertThat(repository.getTransactionSumRecursive(1L), equalTo(30D));
+    }
+
+    @Test
+    public void testConcurrentUpsertCreatesOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<UpsertResult>> results = new ArrayList<>();
+
+        try {
+            for (int thread = 0; thread < 8; thread++) {
+                final double amount = thread;
+
+                results.add(executor.submit(new Callable<UpsertResult>() {
+                    @Override
+                    public UpsertResult call() throws Exception {
+                        return repository.upsertTransaction(new Transaction(1000L, amount, "test", null));
+                    }
+                }));
+            }
+
+            int created = 0;
+            for (Future<UpsertResult> result : results) {
+                if (result.get() == UpsertResult.CREATED) {
+                    created++;
+                }
+            }
+            assertThat(created, equalTo(1));
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(repository.getTransactionListByType("test").size(), equalTo(1));
+    }
+
+    @Test
+    public void testTransactionsShareTheirType() throws TransactionInvalidException {
+        repository.addTransaction(new Transaction(1L, 10D, new String("cars"), null));
+        repository.addTransaction(new Transaction(2L, 10D, new String("cars"), null));
+
+        assertThat(repository.getTransactionById(1L).getType(), sameInstance(repository.getTransactionById(2L).getType()));
+        assertThat(repository.getTransactionCountByType("cars"), equalTo(2));
+        assertThat(repository.transactionListContainsType("shopping"), equalTo(false));
+        assertThat(repository.getTransactionStatsByType("shopping"), nullValue());
+    }
+
+    @Test
+    public void testSumByTypeCacheIsInvalidated() throws Exception {
+        repository.addTransaction(new Transaction(1L, 10D, "cars", null));
+        repository.addTransaction(new Transaction(2L, 20D, "cars", 1L));
+        repository.addTransaction(new Transaction(3L, 30D, "shopping", 2L));
+
+        assertThat(repository.getTransactionSumByType(1L, "cars"), equalTo(30D));
+        long hits = repository.getSumCache().getHits();
+        assertThat(repository.getTransactionSumByType(1L, "cars"), equalTo(30D));
+        assertThat(repository.getSumCache().getHits(), equalTo(hits + 1));
+
+        // a new descendant
+        repository.addTransaction(new Transaction(4L, 5D, "cars", 3L));
+        assertThat(repository.getTransactionSumByType(1L, "cars"), equalTo(35D));
+
+        // a type change of a descendant
+        assertThat(repository.getTransactionSumByType(2L, "shopping"), equalTo(30D));
+        repository.addTransaction(new Transaction(3L, 30D, "cars", 2L));
+        assertThat(repository.getTransactionSumByType(1L, "cars"), equalTo(65D));
+        assertThat(repository.getTransactionSumByType(2L, "shopping"), equalTo(0D));
+    }
+
+    @Test
+    public void testSumByTypeStaysCachedWhileOtherSubtreesAreWritten() throws Exception {
+        for (long root = 1; root <= 200; root++) {
+            repository.addTransaction(new Transaction(root, 10D, "cars", null));
+            repository.addTransaction(new Transaction(1000 + root, 5D, "cars", root));
+        }
+        repository.addTransaction(new Transaction(100000L, 1D, "cars", null));
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            for (long id = 100001; running.get(); id++) {
+                try {
+                    repository.addTransaction(new Transaction(id, 1D, "cars", 100000L));
+                } catch (TransactionInvalidException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        writer.start();
+
+        try {
+            long hits = repository.getSumCache().getHits();
+
+            for (long root = 1; root <= 200; root++) {
+                assertThat(repository.getTransactionSumByType(root, "cars"), equalTo(15D));
+                assertThat(repository.getTransactionSumByType(root, "cars"), equalTo(15D));
+            }
+
+            // every second read is a hit, although writes happened while the sums were computed
+            assertThat(repository.getSumCache().getHits(), equalTo(hits + 200));
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    @Test
+    public void testSumByTypeCacheIsInvalidatedOnMove() throws Exception {
+        repository.addTransaction(new Transaction(1L, 10D, "cars", null));
+        repository.addTransaction(new Transaction(2L, 10D, "cars", null));
+        repository.addTransaction(new Transaction(3L, 10D, "shopping", 1L));
+        repository.addTransaction(new Transaction(4L, 10D, "cars", 3L));
+
+        assertThat(repository.getTransactionSumByType(1L, "cars"), equalTo(20D));
+        assertThat(repository.getTransactionSumByType(2L, "cars"), equalTo(10D));
+
+        // moves 3 together with its child 4
+        repository.addTransaction(new Transaction(3L, 10D, "shopping", 2L));
+
+        assertThat(repository.getTransactionSumByType(1L, "cars"), equalTo(10D));
+        assertThat(repository.getTransactionSumByType(2L, "cars"), equalTo(20D));
+    }
 }
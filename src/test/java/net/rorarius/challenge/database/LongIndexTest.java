@@ -0,0 +1,76 @@
+package net.rorarius.challenge.database;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class LongIndexTest
+{
+    @Test
+    public void testPutAndGet() {
+        LongIndex<String> index = new LongIndex<>();
+
+        assertThat(index.put(1L, "one"), nullValue());
+        assertThat(index.put(1L, "uno"), equalTo("one"));
+        assertThat(index.get(1L), equalTo("uno"));
+        assertThat(index.get(2L), nullValue());
+        assertThat(index.size(), equalTo(1));
+    }
+
+    @Test
+    public void testManyKeys() {
+        LongIndex<Long> index = new LongIndex<>();
+
+        for (long i = -50000; i < 50000; i++) {
+            index.put(i * 1024, i);
+        }
+
+        assertThat(index.size(), equalTo(100000));
+        for (long i = -50000; i < 50000; i++) {
+            assertThat(index.get(i * 1024), equalTo(i));
+        }
+        assertThat(index.containsKey(1L), equalTo(false));
+        assertThat(index.containsKey(Long.MIN_VALUE), equalTo(false));
+    }
+
+    @Test
+    public void testComputeIfAbsent() {
+        LongIndex<LongOrderedSet> index = new LongIndex<>();
+
+        LongOrderedSet set = index.computeIfAbsent(5L, key -> new LongOrderedSet());
+        set.add(7L);
+
+        assertThat(index.computeIfAbsent(5L, key -> new LongOrderedSet()).contains(7L), equalTo(true));
+        assertThat(index.size(), equalTo(1));
+    }
+
+    @Test
+    public void testClear() {
+        LongIndex<String> index = new LongIndex<>();
+        index.put(0L, "zero");
+        index.clear();
+
+        assertThat(index.get(0L), nullValue());
+        assertThat(index.size(), equalTo(0));
+    }
+
+    @Test
+    public void testRemove() {
+        LongIndex<Long> index = new LongIndex<>();
+
+        for (long i = 0; i < 10000; i++) {
+            index.put(i * 16, i);
+        }
+        for (long i = 0; i < 10000; i += 2) {
+            assertThat(index.remove(i * 16), equalTo(i));
+        }
+
+        assertThat(index.size(), equalTo(5000));
+        assertThat(index.remove(0L), nullValue());
+        for (long i = 0; i < 10000; i++) {
+            assertThat(index.get(i * 16), equalTo(i % 2 == 0 ? null : i));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package net.rorarius.challenge.database;
+
+import org.junit.Test;
+
+import java.util.PrimitiveIterator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class LongOrderedSetTest
+{
+    @Test
+    public void testKeepsInsertionOrder() {
+        LongOrderedSet set = new LongOrderedSet();
+
+        assertThat(set.add(30L), equalTo(true));
+        assertThat(set.add(10L), equalTo(true));
+        assertThat(set.add(20L), equalTo(true));
+        assertThat(set.add(10L), equalTo(false));
+
+        assertThat(set.size(), equalTo(3));
+        assertThat(set.toArray(), equalTo(new long[] {30L, 10L, 20L}));
+    }
+
+    @Test
+    public void testRemove() {
+        LongOrderedSet set = new LongOrderedSet();
+
+        for (long i = 0; i < 1000; i++) {
+            set.add(i);
+        }
+        for (long i = 0; i < 1000; i += 2) {
+            assertThat(set.remove(i), equalTo(true));
+        }
+
+        assertThat(set.remove(0L), equalTo(false));
+        assertThat(set.size(), equalTo(500));
+        assertThat(set.contains(2L), equalTo(false));
+        assertThat(set.contains(3L), equalTo(true));
+
+        long[] values = set.toArray();
+        for (int i = 0; i < values.length; i++) {
+            assertThat(values[i], equalTo(i * 2L + 1));
+        }
+
+        set.add(0L);
+        assertThat(set.toArray()[500], equalTo(0L));
+    }
+
+    @Test
+    public void testRemoveAll() {
+        LongOrderedSet set = new LongOrderedSet();
+        set.add(1L);
+        set.remove(1L);
+
+        assertThat(set.isEmpty(), equalTo(true));
+        assertThat(set.add(1L), equalTo(true));
+        assertThat(set.toArray(), equalTo(new long[] {1L}));
+    }
+
+    @Test
+    public void testChunkIterator() {
+        LongOrderedSet set = new LongOrderedSet(true);
+
+        for (long i = 0; i < 10; i++) {
+            set.add(i);
+        }
+        set.remove(4L);
+
+        PrimitiveIterator.OfLong iterator = set.iterator(3);
+        long expected = 0;
+
+        while (iterator.hasNext()) {
+            if (expected == 4) {
+                expected++;
+            }
+            assertThat(iterator.nextLong(), equalTo(expected++));
+
+            // additions during the iteration are seen
+            if (expected == 2) {
+                set.add(10L);
+            }
+        }
+
+        assertThat(expected, equalTo(11L));
+    }
+
+    @Test
+    public void testChunkIteratorSurvivesRemovalAndCompaction() {
+        LongOrderedSet set = new LongOrderedSet(true);
+
+        for (long i = 0; i < 10; i++) {
+            set.add(i);
+        }
+
+        PrimitiveIterator.OfLong iterator = set.iterator(2);
+        assertThat(iterator.nextLong(), equalTo(0L));
+        assertThat(iterator.nextLong(), equalTo(1L));
+
+        // the last returned ID is gone before the next chunk is fetched
+        set.remove(1L);
+        assertThat(iterator.nextLong(), equalTo(2L));
+        assertThat(iterator.nextLong(), equalTo(3L));
+
+        // removing most IDs compacts the order array
+        for (long i = 0; i < 7; i++) {
+            set.remove(i);
+        }
+        set.add(10L);
+
+        assertThat(iterator.nextLong(), equalTo(7L));
+        assertThat(iterator.nextLong(), equalTo(8L));
+        assertThat(iterator.nextLong(), equalTo(9L));
+        assertThat(iterator.nextLong(), equalTo(10L));
+        assertThat(iterator.hasNext(), equalTo(false));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testChunkIteratorNeedsSequences() {
+        LongOrderedSet set = new LongOrderedSet();
+        set.add(1L);
+
+        set.iterator(2);
+    }
+}
@@ -0,0 +1,24 @@
+package net.rorarius.challenge.database;
+
+import org.junit.After;
+import org.junit.Before;
+
+/**
+ * Runs all repository tests against the transactions stored in direct memory
+ */
+public class OffHeapDBRepositoryTest extends DBRepositoryTest
+{
+    @Before
+    public void selectOffHeapStore() {
+        // the repository is empty after the startup of DBRepositoryTest
+        repository.storage = TransactionStore.Backend.OFF_HEAP;
+        repository.configure();
+    }
+
+    @After
+    public void selectHeapStore() {
+        repository.clearRepostory();
+        repository.storage = TransactionStore.Backend.HEAP;
+        repository.configure();
+    }
+}
@@ -0,0 +1,99 @@
+package net.rorarius.challenge.database;
+
+import net.rorarius.challenge.model.Transaction;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class OffHeapTransactionStoreTest
+{
+    @Test
+    public void testPutAndGet() {
+        OffHeapTransactionStore store = new OffHeapTransactionStore(new TypeDictionary());
+
+        store.put(new Transaction(1L, 10D, "cars", null));
+        store.put(new Transaction(2L, 5.5D, "shopping", 1L));
+
+        Transaction transaction = store.get(2L);
+        assertThat(transaction.getTransactionId(), equalTo(2L));
+        assertThat(transaction.getAmount(), equalTo(5.5D));
+        assertThat(transaction.getType(), equalTo("shopping"));
+        assertThat(transaction.getParentId(), equalTo(1L));
+        assertThat(store.get(1L).getParentId(), nullValue());
+        assertThat(store.get(3L), nullValue());
+        assertThat(store.containsKey(1L), equalTo(true));
+        assertThat(store.containsKey(3L), equalTo(false));
+    }
+
+    @Test
+    public void testReplace() {
+        OffHeapTransactionStore store = new OffHeapTransactionStore(new TypeDictionary());
+
+        store.put(new Transaction(1L, 10D, "cars", null));
+        store.put(new Transaction(1L, 20D, "shopping", 7L));
+
+        assertThat(store.size(), equalTo(1));
+        assertThat(store.get(1L).getAmount(), equalTo(20D));
+        assertThat(store.get(1L).getType(), equalTo("shopping"));
+        assertThat(store.get(1L).getParentId(), equalTo(7L));
+    }
+
+    @Test
+    public void testManyTransactions() {
+        OffHeapTransactionStore store = new OffHeapTransactionStore(new TypeDictionary());
+
+        for (long i = -50000; i < 50000; i++) {
+            store.put(new Transaction(i * 1024, (double) i, "type" + (i & 7), null));
+        }
+
+        assertThat(store.size(), equalTo(100000));
+        for (long i = -50000; i < 50000; i++) {
+            Transaction transaction = store.get(i * 1024);
+            assertThat(transaction.getAmount(), equalTo((double) i));
+            assertThat(transaction.getType(), equalTo("type" + (i & 7)));
+        }
+
+        AtomicInteger count = new AtomicInteger();
+        store.forEachValue(transaction -> count.incrementAndGet());
+        assertThat(count.get(), equalTo(100000));
+    }
+
+    @Test
+    public void testClear() {
+        OffHeapTransactionStore store = new OffHeapTransactionStore(new TypeDictionary());
+
+        store.put(new Transaction(1L, 10D, "cars", null));
+        store.clear();
+
+        assertThat(store.size(), equalTo(0));
+        assertThat(store.get(1L), nullValue());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFullSegmentFails() {
+        OffHeapTransactionStore store = new OffHeapTransactionStore(new TypeDictionary(), 16);
+
+        // 64 segments of at most 12 records each
+        for (long id = 0; id < 64 * 12 + 1; id++) {
+            store.put(new Transaction(id, 10D, "cars", null));
+        }
+    }
+
+    @Test
+    public void testSharesTypeDictionary() {
+        TypeDictionary types = new TypeDictionary();
+        int typeId = types.idOf("cars");
+        OffHeapTransactionStore store = new OffHeapTransactionStore(types);
+
+        store.put(new Transaction(1L, 10D, new String("cars"), null));
+        store.put(new Transaction(2L, 10D, "shopping", null));
+
+        assertThat(store.get(1L).getType(), sameInstance(types.typeOf(typeId)));
+        assertThat(types.lookup("shopping"), equalTo(typeId + 1));
+    }
+}
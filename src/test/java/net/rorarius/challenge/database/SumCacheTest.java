@@ -0,0 +1,44 @@
+package net.rorarius.challenge.database;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class SumCacheTest
+{
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        SumCache cache = new SumCache(2);
+
+        cache.put(1L, "cars", 1D, 1L);
+        cache.put(2L, "cars", 2D, 1L);
+        cache.get(1L, "cars", 1L);
+        cache.put(3L, "cars", 3D, 1L);
+
+        assertThat(cache.get(1L, "cars", 1L), equalTo(1D));
+        assertThat(cache.get(2L, "cars", 1L), nullValue());
+        assertThat(cache.get(3L, "cars", 1L), equalTo(3D));
+        assertThat(cache.getEvictions(), equalTo(1L));
+        assertThat(cache.getHits(), equalTo(3L));
+        assertThat(cache.getMisses(), equalTo(1L));
+    }
+
+    @Test
+    public void testDropsSumsOfChangedSubtrees() {
+        SumCache cache = new SumCache(10);
+
+        cache.put(1L, "cars", 1D, 1L);
+        cache.put(1L, "shopping", 2D, 2L);
+        cache.put(2L, "cars", 3D, 1L);
+
+        assertThat(cache.get(1L, "cars", 2L), nullValue());
+        assertThat(cache.get(1L, "shopping", 2L), equalTo(2D));
+        assertThat(cache.get(2L, "cars", 1L), equalTo(3D));
+        assertThat(cache.size(), equalTo(2));
+
+        assertThat(cache.get(1L, "shopping", 3L), nullValue());
+        assertThat(cache.size(), equalTo(1));
+    }
+}
@@ -0,0 +1,172 @@
+package net.rorarius.challenge.database;
+
+import net.rorarius.challenge.Application;
+import net.rorarius.challenge.model.Transaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.fail;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = Application.class)
+public class TransactionPersistenceTest
+{
+    @Autowired
+    DBRepository repository;
+
+    File directory;
+
+    @Before
+    public void startup() throws IOException {
+        repository.clearRepostory();
+        directory = Files.createTempDirectory("transactions").toFile();
+    }
+
+    @After
+    public void cleanup() {
+        repository.clearRepostory();
+
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private TransactionPersistence start() throws IOException {
+        TransactionPersistence persistence = new TransactionPersistence();
+        persistence.repository = repository;
+        persistence.enabled = true;
+        persistence.directory = directory;
+        persistence.fsyncPolicy = TransactionLog.FsyncPolicy.ALWAYS;
+        persistence.flushIntervalMs = 100;
+        persistence.snapshotIntervalSeconds = 3600;
+        persistence.start();
+
+        return persistence;
+    }
+
+    @Test
+    public void testRecoverFromLog() throws Exception {
+        TransactionPersistence persistence = start();
+        repository.addTransaction(new Transaction(1L, 10D, "test", null));
+        repository.addTransaction(new Transaction(2L, 10D, "test", 1L));
+        repository.addTransaction(new Transaction(2L, 20D, "test", 1L));
+        persistence.close(false);
+
+        repository.clearRepostory();
+        persistence = start();
+
+        assertThat(repository.getTransactionSumRecursive(1L), equalTo(30D));
+        assertThat(repository.getTransactionListByType("test").size(), equalTo(2));
+        persistence.stop();
+    }
+
+    @Test
+    public void testRecoverFromSnapshotAndLog() throws Exception {
+        TransactionPersistence persistence = start();
+        repository.addTransaction(new Transaction(1L, 10D, "test", null));
+        repository.addTransaction(new Transaction(2L, 10D, "test", 1L));
+        persistence.snapshot();
+        repository.addTransaction(new Transaction(3L, 10D, "other", 2L));
+        repository.addTransaction(new Transaction(1L, 5D, "test", null));
+        persistence.close(false);
+
+        assertThat(TransactionLog.segments(directory).length, equalTo(1));
+
+        repository.clearRepostory();
+        persistence = start();
+
+        assertThat(repository.getTransactionSumRecursive(1L), equalTo(25D));
+        assertThat(repository.getTransactionListByType("other").size(), equalTo(1));
+        persistence.stop();
+    }
+
+    @Test
+    public void testRecoverIgnoresTornRecord() throws Exception {
+        TransactionPersistence persistence = start();
+        repository.addTransaction(new Transaction(1L, 10D, "test", null));
+        repository.addTransaction(new Transaction(2L, 10D, "test", 1L));
+        persistence.close(false);
+
+        // cut the last record in half, as if the process died while writing it
+        long[] segments = TransactionLog.segments(directory);
+        try (RandomAccessFile file = new RandomAccessFile(TransactionLog.segmentFile(directory, segments[0]), "rw")) {
+            file.setLength(file.length() - 10);
+        }
+
+        repository.clearRepostory();
+        persistence = start();
+
+        assertThat(repository.transactionExists(1L), equalTo(true));
+        assertThat(repository.transactionExists(2L), equalTo(false));
+        persistence.stop();
+    }
+
+    @Test
+    public void testRestartFromShutdownSnapshot() throws Exception {
+        TransactionPersistence persistence = start();
+        repository.addTransaction(new Transaction(1L, 10D, "test", null));
+        repository.addTransaction(new Transaction(2L, 10D, "other", 1L));
+        repository.addTransaction(new Transaction(3L, 10D, "test", 2L));
+        repository.addTransaction(new Transaction(3L, 10D, "test", 1L));
+        persistence.stop();
+
+        repository.clearRepostory();
+        persistence = start();
+
+        // served from the mapped snapshot or the loaded indexes, depending on the progress of the load
+        assertThat(repository.getTransactionById(2L).getType(), equalTo("other"));
+        assertThat(repository.getTransactionSumRecursive(1L), equalTo(30D));
+        assertThat(repository.getTransactionSumRecursive(2L), equalTo(10D));
+        assertThat(repository.transactionExists(4L), equalTo(false));
+
+        repository.awaitSnapshotLoaded();
+        assertThat(repository.getTransactionListByType("test").size(), equalTo(2));
+        assertThat(repository.getChildTransactions(1L).size(), equalTo(2));
+
+        repository.addTransaction(new Transaction(4L, 5D, "test", 3L));
+        assertThat(repository.getTransactionSumRecursive(1L), equalTo(35D));
+        persistence.stop();
+    }
+
+    @Test
+    public void testFailedWriteFailsTheLog() throws Exception {
+        TransactionLog log = new TransactionLog(directory, 0, TransactionLog.FsyncPolicy.ALWAYS);
+        log.append(new Transaction(1L, 10D, "cars", null));
+        log.awaitDurable();
+
+        // the channel is closed, so the next write fails
+        log.close();
+        log.append(new Transaction(2L, 10D, "cars", null));
+
+        try {
+            log.awaitDurable();
+            fail();
+        } catch (UncheckedIOException e) {
+            assertThat(e.getCause() instanceof ClosedChannelException, equalTo(true));
+        }
+
+        try {
+            log.append(new Transaction(3L, 10D, "cars", null));
+            fail();
+        } catch (UncheckedIOException e) {
+            assertThat(e.getCause() instanceof ClosedChannelException, equalTo(true));
+        }
+
+        assertThat(TransactionLog.replay(TransactionLog.segmentFile(directory, 0), transaction -> { }), equalTo(1));
+    }
+}
@@ -0,0 +1,48 @@
+package net.rorarius.challenge.database;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class TypeDictionaryTest
+{
+    @Test
+    public void testAssignsIdsInOrder() {
+        TypeDictionary dictionary = new TypeDictionary();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(dictionary.idOf("type" + i), equalTo(i));
+        }
+        assertThat(dictionary.idOf("type42"), equalTo(42));
+        assertThat(dictionary.size(), equalTo(100));
+        assertThat(dictionary.typeOf(42), equalTo("type42"));
+    }
+
+    @Test
+    public void testLookupDoesNotAdd() {
+        TypeDictionary dictionary = new TypeDictionary();
+        dictionary.idOf("cars");
+
+        assertThat(dictionary.lookup("cars"), equalTo(0));
+        assertThat(dictionary.lookup("shopping"), equalTo(TypeDictionary.NO_TYPE));
+        assertThat(dictionary.lookup(null), equalTo(TypeDictionary.NO_TYPE));
+        assertThat(dictionary.idOf(null), equalTo(TypeDictionary.NO_TYPE));
+        assertThat(dictionary.size(), equalTo(1));
+        assertThat(dictionary.typeOf(TypeDictionary.NO_TYPE), nullValue());
+        assertThat(dictionary.typeOf(1), nullValue());
+    }
+
+    @Test
+    public void testReturnsCanonicalString() {
+        TypeDictionary dictionary = new TypeDictionary();
+        String first = new String("cars");
+        String second = new String("cars");
+
+        dictionary.idOf(first);
+
+        assertThat(dictionary.typeOf(dictionary.idOf(second)), sameInstance(first));
+    }
+}
@@ -0,0 +1,49 @@
+package net.rorarius.challenge.database;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TypeStatsTest
+{
+    @Test
+    public void testRemovingAnExtremeNeedsARecompute() {
+        TypeStats stats = new TypeStats();
+        stats.add(10D);
+        stats.add(20D);
+        stats.add(30D);
+
+        stats.remove(20D);
+        assertThat(stats.hasExactExtremes(), equalTo(true));
+
+        stats.replace(30D, 15D);
+        assertThat(stats.hasExactExtremes(), equalTo(false));
+        assertThat(stats.getCount(), equalTo(2));
+        assertThat(stats.getSum(), equalTo(25D));
+
+        stats.setExtremes(10D, 15D);
+        assertThat(stats.getMax(), equalTo(15D));
+    }
+
+    @Test
+    public void testRemovingTheLastAmountResets() {
+        TypeStats stats = new TypeStats();
+        stats.add(10D);
+        stats.remove(10D);
+
+        assertThat(stats.hasExactExtremes(), equalTo(true));
+        assertThat(stats.getMin(), nullValue());
+        assertThat(stats.getSum(), equalTo(0D));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRemovingAnUnknownAmountFails() {
+        TypeStats stats = new TypeStats();
+        stats.add(10D);
+        stats.add(20D);
+
+        stats.remove(5D);
+    }
+}
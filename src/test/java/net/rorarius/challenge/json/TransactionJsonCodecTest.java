@@ -0,0 +1,95 @@
+package net.rorarius.challenge.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.rorarius.challenge.enums.StatusCode;
+import net.rorarius.challenge.model.Transaction;
+import net.rorarius.challenge.responses.StatusResponse;
+import net.rorarius.challenge.responses.SumResponse;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TransactionJsonCodecTest
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonFactory jsonFactory = objectMapper.getFactory();
+
+    @Test
+    public void testWritesLikeDatabinding() throws IOException {
+        Transaction[] transactions = {
+                new Transaction(10L, 5000D, "cars", 7L),
+                new Transaction(10L, 0.1D, "shopping \"ä\"", null),
+                new Transaction(10L, null, null, null)
+        };
+
+        for (Transaction transaction : transactions) {
+            assertThat(write(transaction), equalTo(objectMapper.writeValueAsString(transaction)));
+        }
+
+        for (StatusCode status : StatusCode.values()) {
+            StatusResponse response = new StatusResponse(status);
+            assertThat(write(response), equalTo(objectMapper.writeValueAsString(response)));
+        }
+
+        assertThat(write(new SumResponse(15000D)), equalTo(objectMapper.writeValueAsString(new SumResponse(15000D))));
+        assertThat(write(new SumResponse(null)), equalTo(objectMapper.writeValueAsString(new SumResponse(null))));
+    }
+
+    @Test
+    public void testReadTransaction() throws IOException {
+        Transaction transaction = read("{\"amount\": 10, \"type\": \"cars\", \"parent_id\": 7,"
+                + " \"transaction_id\": 3, \"extra\": {\"nested\": [1, 2]}}");
+
+        assertThat(transaction.getAmount(), equalTo(10D));
+        assertThat(transaction.getType(), equalTo("cars"));
+        assertThat(transaction.getParentId(), equalTo(7L));
+        assertThat(transaction.getTransactionId(), nullValue());
+
+        transaction = read("{\"amount\": \"2.5\", \"type\": null, \"parent_id\": null}");
+
+        assertThat(transaction.getAmount(), equalTo(2.5D));
+        assertThat(transaction.getType(), nullValue());
+        assertThat(transaction.getParentId(), nullValue());
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testReadRejectsNonNumericAmount() throws IOException {
+        read("{\"amount\": \"ten\", \"type\": \"cars\"}");
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void testReadRejectsArray() throws IOException {
+        read("[{\"amount\": 10, \"type\": \"cars\"}]");
+    }
+
+    private String write(Object value) throws IOException {
+        StringWriter writer = new StringWriter();
+
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            if (value instanceof Transaction) {
+                TransactionJsonCodec.writeTransaction(generator, (Transaction) value);
+            } else if (value instanceof StatusResponse) {
+                TransactionJsonCodec.writeStatusResponse(generator, (StatusResponse) value);
+            } else {
+                TransactionJsonCodec.writeSumResponse(generator, (SumResponse) value);
+            }
+        }
+
+        return writer.toString();
+    }
+
+    private Transaction read(String json) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            return TransactionJsonCodec.readTransaction(parser);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package net.rorarius.challenge.model;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TransactionTest
+{
+    @Test
+    public void testEqualsByTransactionId() {
+        Transaction trx = new Transaction(100000L, 10D, "cars", null);
+        Transaction update = new Transaction(100000L, 20D, "shopping", 5L);
+
+        assertThat(trx.equals(update), equalTo(true));
+        assertThat(trx.hashCode(), equalTo(update.hashCode()));
+        assertThat(trx.equals(new Transaction(100001L, 10D, "cars", null)), equalTo(false));
+    }
+
+    @Test
+    public void testEqualsIsNullSafe() {
+        Transaction trx = new Transaction(1L, 10D, "cars", null);
+        Transaction withoutId = new Transaction(null, 10D, "cars", null);
+
+        assertThat(trx.equals(null), equalTo(false));
+        assertThat(trx.equals("1"), equalTo(false));
+        assertThat(trx.equals(withoutId), equalTo(false));
+        assertThat(withoutId.equals(trx), equalTo(false));
+        assertThat(withoutId.equals(new Transaction(null, 10D, "cars", null)), equalTo(false));
+        assertThat(withoutId.equals(withoutId), equalTo(true));
+    }
+
+    @Test
+    public void testHashSetHasNoDuplicates() {
+        Set<Transaction> transactions = new HashSet<>();
+
+        for (int i = 0; i < 3; i++) {
+            transactions.add(new Transaction(100000L, (double) i, "cars", null));
+        }
+
+        assertThat(transactions.size(), equalTo(1));
+    }
+}
@@ -62,4 +62,35 @@ public class ValidatorTest
         assertThat(result.hasErrors(), equalTo(true));
         assertThat(result.getErrorCount(), equalTo(1));
     }
+
+    @Test
+    public void testTransactionIsOwnParent() {
+        Transaction trx = new Transaction(100000L, 10D, "test", 100000L);
+
+        BeanPropertyBindingResult result = new BeanPropertyBindingResult(trx, "transaction");
+        ValidationUtils.invokeValidator(validator, trx, result);
+
+        assertThat(result.hasErrors(), equalTo(true));
+        assertThat(result.getErrorCount(), equalTo(1));
+    }
+
+    @Test
+    public void testFastPathMatchesValidate() {
+        Transaction[] transactions = {
+                new Transaction(1L, 10D, "test", null),
+                new Transaction(1L, 10D, "test", 2L),
+                new Transaction(null, 10D, "test", 2L),
+                new Transaction(1L, null, "test", null),
+                new Transaction(1L, 10D, null, null),
+                new Transaction(100000L, 10D, "test", 100000L),
+                new Transaction(null, null, null, null)
+        };
+
+        for (Transaction trx : transactions) {
+            BeanPropertyBindingResult result = new BeanPropertyBindingResult(trx, "transaction");
+            ValidationUtils.invokeValidator(validator, trx, result);
+
+            assertThat(validator.isValid(trx), equalTo(!result.hasErrors()));
+        }
+    }
 }